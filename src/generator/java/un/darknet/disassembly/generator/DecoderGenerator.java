@@ -0,0 +1,151 @@
+package un.darknet.disassembly.generator;
+
+import un.darknet.disassembly.X86.MicroOps;
+import un.darknet.disassembly.X86.Mnemonics;
+import un.darknet.disassembly.X86.Operations;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates {@code GeneratedX86Decoder}, which replaces the micro-op interpreter of the x86 decoder
+ * with one straight-line case per opcode.
+ * <p>
+ * The cases are emitted from the compiled {@link MicroOps#PROGRAMS}, so the generated decoder decodes exactly
+ * like the interpreter. Flags are emitted as constants, register indices are folded into the table lookups and
+ * handlers are called directly by their name (op + opcode in hex). Opcodes which compile to the same statements
+ * share a case. The tests fail if the generated method gets too large to be compiled by the JIT.
+ * Run by the {@code generateDecoder} Gradle task with the output source directory as argument.
+ */
+public class DecoderGenerator {
+
+    static final String PACKAGE = "un.darknet.disassembly.X86";
+    static final String CLASS = "GeneratedX86Decoder";
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length != 1)
+            throw new IllegalArgumentException("Usage: DecoderGenerator <output source directory>");
+
+        Path file = Paths.get(args[0], PACKAGE.replace('.', '/'), CLASS + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, generate().getBytes(StandardCharsets.UTF_8));
+
+    }
+
+    static String generate() {
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("package ").append(PACKAGE).append(";\n\n");
+        sb.append("import un.darknet.disassembly.PlatformDisassembler;\n");
+        sb.append("import un.darknet.disassembly.decoding.DecoderContext;\n");
+        sb.append("import un.darknet.disassembly.operand.Operand;\n\n");
+        sb.append("import java.io.IOException;\n");
+        sb.append("import java.util.List;\n\n");
+        sb.append("import static un.darknet.disassembly.X86.Mnemonics.MNEMONIC_VARIANTS;\n\n");
+        sb.append("/**\n");
+        sb.append(" * Generated by {@code DecoderGenerator} from {@link Operations#ops} and {@link Mnemonics#Mnemonics}, do not edit.\n");
+        sb.append(" */\n");
+        sb.append("public class ").append(CLASS).append(" extends X86Decoder {\n\n");
+        sb.append("    public ").append(CLASS).append("(PlatformDisassembler platform) {\n");
+        sb.append("        super(platform);\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    Operand[] decodeOperands(DecoderContext ctx, int[] program) throws IOException {\n\n");
+        sb.append("        List<Operand> operands = ctx.getOperandBuffer();\n");
+        sb.append("        operands.clear();\n\n");
+        sb.append("        switch (ctx.getOpcode()) {\n\n");
+
+        // opcodes with the same statements share one case, which keeps the method well below the JIT limit
+        Map<String, List<Integer>> cases = new LinkedHashMap<>();
+        for (int opcode = 0; opcode < MicroOps.PROGRAMS.length; opcode++) {
+
+            StringBuilder body = new StringBuilder();
+            for (int microOp : MicroOps.PROGRAMS[opcode])
+                body.append("                ").append(statement(opcode, microOp)).append('\n');
+
+            cases.computeIfAbsent(body.toString(), k -> new ArrayList<>()).add(opcode);
+
+        }
+
+        for (Map.Entry<String, List<Integer>> entry : cases.entrySet()) {
+
+            for (int opcode : entry.getValue())
+                sb.append(String.format("            case 0x%02x: // %s \"%s\"%n", opcode, describe(opcode),
+                        opcode < Operations.ops.length ? Operations.ops[opcode] : ""));
+
+            sb.append(entry.getKey());
+            sb.append("                break;\n\n");
+
+        }
+
+        sb.append("            default:\n");
+        sb.append("                return super.decodeOperands(ctx, program);\n\n");
+        sb.append("        }\n\n");
+        sb.append("        return operands.toArray(new Operand[0]);\n\n");
+        sb.append("    }\n\n");
+        sb.append("}\n");
+
+        return sb.toString();
+
+    }
+
+    /**
+     * @return the Java statement which executes the micro-op like the interpreter does
+     */
+    static String statement(int opcode, int microOp) {
+
+        int arg = MicroOps.arg(microOp);
+
+        switch (MicroOps.code(microOp)) {
+            case MicroOps.REGISTER:
+                return "operands.add(new Operand(pool.register(Constants.REGISTERS[getSize(true, ctx)][" + arg + "])));";
+            case MicroOps.OPCODE_REGISTER:
+                return "operands.add(new Operand(pool.register(Constants.REGISTERS[getSize(true, ctx)][" + (opcode & 0x07) + "])));";
+            case MicroOps.REGRM:
+                return "decodeREGRM(ctx, operands);";
+            case MicroOps.RM:
+                return "decodeRM(ctx, operands);";
+            case MicroOps.OPCODE_REGISTER_RM:
+                return "decodeR(ctx, operands);";
+            case MicroOps.IMMEDIATE:
+                return "operands.add(new Operand(pool.immediate(readSized(getSize(true, ctx)))));";
+            case MicroOps.FLAG:
+                return String.format("ctx.getFlags().set(0x%XL);", Operations.decoderFlags[arg]);
+            case MicroOps.PREFIX:
+                return String.format("ctx.getFlags().set(0x%XL);", Operations.x86Prefix[arg]);
+            case MicroOps.LEGACY:
+                return String.format("ctx.getFlags().set(0x%XL);", Operations.PREFIX_LEGACY);
+            case MicroOps.OVERRIDE:
+                return "ctx.setOverride(" + arg + ");";
+            case MicroOps.SIZED_MNEMONIC:
+                return String.format("ctx.setMnemonic(MNEMONIC_VARIANTS[0x%02x][getSize(true, ctx) - 1]);", opcode);
+            case MicroOps.HANDLER:
+                return String.format("op%x(ctx, operands);", opcode);
+            case MicroOps.DEBUG:
+                return "debug(ctx, operands);";
+            default:
+                return "unhandled(ctx);";
+        }
+
+    }
+
+    static String describe(int opcode) {
+
+        if (opcode >= Mnemonics.Mnemonics.length)
+            return "UNKNOWN";
+
+        Object mnemonic = Mnemonics.Mnemonics[opcode];
+        return mnemonic instanceof String[] ? String.join("/", (String[]) mnemonic) : (String) mnemonic;
+
+    }
+
+}
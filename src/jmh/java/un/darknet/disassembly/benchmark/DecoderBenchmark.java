@@ -0,0 +1,112 @@
+package un.darknet.disassembly.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import un.darknet.disassembly.Architecture;
+import un.darknet.disassembly.Disassembler;
+import un.darknet.disassembly.DisassemblyOptions;
+import un.darknet.disassembly.Endianness;
+import un.darknet.disassembly.X86.X86Decoder;
+import un.darknet.disassembly.X86.X86Disassembler;
+import un.darknet.disassembly.decoding.DecoderContext;
+import un.darknet.disassembly.input.ArrayByteSource;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding throughput of the x86 decoders over the whole input.
+ * The operations are reported per invocation, instructions and bytes per second by the {@link Counters}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+
+    /**
+     * interpreter: the micro-op interpreter of {@link X86Decoder},
+     * generated: the decoder generated from the opcode tables,
+     * length: only instruction lengths from {@link un.darknet.disassembly.X86.X86LengthDecoder}
+     */
+    @Param({"interpreter", "generated", "length"})
+    public String decoder;
+
+    @Param({"65536"})
+    public int size;
+
+    private X86Decoder instance;
+    private long length;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public long instructions;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            instructions = 0;
+            bytes = 0;
+        }
+
+    }
+
+    @Setup
+    public void setup() {
+
+        byte[] code = Workloads.code(size);
+        length = code.length;
+
+        X86Disassembler platform = (X86Disassembler) new Disassembler(Architecture.X86, Endianness.LITTLE).getBackend();
+        ArrayByteSource input = new ArrayByteSource(code);
+
+        switch (decoder) {
+            case "interpreter":
+                platform.setGeneratedDecoder(false);
+                instance = platform.newDecoder(input, 0, length, new DisassemblyOptions());
+                break;
+            case "generated":
+                platform.setGeneratedDecoder(true);
+                instance = platform.newDecoder(input, 0, length, new DisassemblyOptions());
+                break;
+            case "length":
+                instance = platform.newLengthDecoder(input, 0, length);
+                break;
+            default:
+                throw new IllegalArgumentException(decoder);
+        }
+
+    }
+
+    /**
+     * Decodes the input like {@link X86Decoder#next()} does, but gets invalid instructions returned instead of thrown.
+     */
+    @Benchmark
+    public Object decode(Counters counters) throws IOException {
+
+        X86Decoder decoder = instance;
+        decoder.seek(0);
+
+        DecoderContext last = null;
+        if (this.decoder.equals("length")) {
+            while (decoder.getPosition() < length) {
+                decoder.nextLength();
+                counters.instructions++;
+            }
+        } else {
+            while (decoder.getPosition() < length) {
+                last = decoder.decodeNext();
+                counters.instructions++;
+            }
+        }
+
+        counters.bytes += length;
+
+        return last;
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package un.darknet.disassembly.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import un.darknet.disassembly.Architecture;
+import un.darknet.disassembly.Disassembler;
+import un.darknet.disassembly.Endianness;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.Program;
+import un.darknet.disassembly.exception.InvalidInstructionException;
+
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Label resolution of a disassembled input.
+ * Resolving replaces constants with labels, so every invocation resolves a fresh program.
+ * The decode benchmarks compare resolving afterwards with labelling the targets while decoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LabelBenchmark {
+
+    @Param({"65536"})
+    public int size;
+
+    private Disassembler disassembler;
+    private byte[] code;
+    private Program program;
+
+    @Setup
+    public void setup() {
+        disassembler = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        code = Workloads.code(size);
+    }
+
+    @Setup(Level.Invocation)
+    public void disassemble() {
+        Instruction[] instructions = disassembler.disassemble(code);
+        program = Program.withInstructions(instructions);
+    }
+
+    @Benchmark
+    public Object resolveLabels() {
+        return disassembler.getBackend().resolveLabels(program);
+    }
+
+    @Benchmark
+    public Object decodeThenResolve() throws IOException, InvalidInstructionException {
+        Program decoded = Program.withCode(code);
+        disassembler.getBackend().process(decoded, 0, code.length);
+        return disassembler.getBackend().resolveLabels(decoded);
+    }
+
+    @Benchmark
+    public Object labelWhileDecoding() throws IOException, InvalidInstructionException {
+        Program decoded = Program.withCode(code);
+        decoded.getOptions().setLabelTargets(true);
+        disassembler.getBackend().process(decoded, 0, code.length);
+        return decoded.getLabels();
+    }
+
+}
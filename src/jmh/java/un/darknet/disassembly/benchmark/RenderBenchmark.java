@@ -0,0 +1,51 @@
+package un.darknet.disassembly.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import un.darknet.disassembly.Architecture;
+import un.darknet.disassembly.Disassembler;
+import un.darknet.disassembly.Endianness;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.listing.ListingFormatter;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering decoded instructions as text, see {@link un.darknet.disassembly.GenericOpcode#toString()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"65536"})
+    public int size;
+
+    private Instruction[] instructions;
+    private final CharBuffer buffer = CharBuffer.allocate(1 << 12);
+
+    @Setup
+    public void setup() {
+        instructions = new Disassembler(Architecture.X86, Endianness.LITTLE).disassemble(Workloads.code(size));
+    }
+
+    @Benchmark
+    public void render(Blackhole blackhole) {
+        for (Instruction instruction : instructions)
+            blackhole.consume(instruction.opcode.toString());
+    }
+
+    @Benchmark
+    public void format(Blackhole blackhole) throws IOException {
+        for (Instruction instruction : instructions) {
+            buffer.clear();
+            blackhole.consume(ListingFormatter.DEFAULT.format(instruction, buffer).position());
+        }
+    }
+
+}
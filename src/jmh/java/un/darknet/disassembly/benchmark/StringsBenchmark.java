@@ -0,0 +1,39 @@
+package un.darknet.disassembly.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import un.darknet.disassembly.StringsReader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the strings of a string table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringsBenchmark {
+
+    @Param({"65536"})
+    public int size;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = Workloads.strings(size);
+    }
+
+    @Benchmark
+    public Object readStrings() {
+        return StringsReader.readStrings(data, 0, data.length);
+    }
+
+    @Benchmark
+    public Object readStringsWithoutDuplicates() {
+        return StringsReader.readStringsWithoutDuplicates(data, 0, data.length);
+    }
+
+}
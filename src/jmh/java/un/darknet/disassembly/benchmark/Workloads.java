@@ -0,0 +1,56 @@
+package un.darknet.disassembly.benchmark;
+
+import un.darknet.disassembly.workload.WorkloadGenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks, every input is generated from a fixed seed so runs are comparable.
+ */
+final class Workloads {
+
+    static final long SEED = 0x5eed;
+
+    private Workloads() {
+    }
+
+    /**
+     * @return code with the default instruction mix and data islands, see {@link WorkloadGenerator}
+     */
+    static byte[] code(int size) {
+        return new WorkloadGenerator(SEED).generate(size);
+    }
+
+    /**
+     * @return null separated printable strings, a quarter of them repeated
+     */
+    static byte[] strings(int size) {
+
+        Random random = new Random(SEED);
+        byte[] data = new byte[size];
+        String[] repeated = {"kernel32.dll", "GetProcAddress", "%s: %d\n", "Invalid argument"};
+
+        int position = 0;
+        while (position < size) {
+
+            byte[] string;
+            if (random.nextInt(4) == 0) {
+                string = repeated[random.nextInt(repeated.length)].getBytes(StandardCharsets.US_ASCII);
+            } else {
+                string = new byte[4 + random.nextInt(28)];
+                for (int i = 0; i < string.length; i++)
+                    string[i] = (byte) (' ' + random.nextInt(95));
+            }
+
+            int length = Math.min(string.length, size - position);
+            System.arraycopy(string, 0, data, position, length);
+            position += length + 1; // zero terminated
+
+        }
+
+        return data;
+
+    }
+
+}
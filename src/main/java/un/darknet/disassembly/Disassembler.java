@@ -6,10 +6,22 @@ import un.darknet.disassembly.data.Instruction;
 import un.darknet.disassembly.data.Program;
 import un.darknet.disassembly.exception.DisassemblerException;
 import un.darknet.disassembly.exception.InvalidInstructionException;
+import un.darknet.disassembly.input.ArrayByteSource;
+import un.darknet.disassembly.input.ByteSource;
 import un.darknet.disassembly.util.Bytes;
 
 import java.io.IOException;
-
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Entry point for disassembling code.
+ * <p>
+ * Thread safety: once the bit size and {@link DisassemblyOptions} are configured, a single disassembler
+ * may be shared by any number of threads. Every call decodes with its own decoder and {@link Program},
+ * the operand pool is lock-free and labels are attached to private copies of pooled objects.
+ * Changing the configuration while disassemblies are running is not supported.
+ */
 public class Disassembler {
 
     public static Logger logger = org.slf4j.LoggerFactory.getLogger(Disassembler.class);
@@ -17,6 +29,7 @@ public class Disassembler {
     private final Architecture architecture;
     private final Endianness endianness;
     private PlatformDisassembler backend;
+    private DisassemblyOptions options = new DisassemblyOptions();
 
     public Disassembler(Architecture architecture, Endianness endianness) {
         this.architecture = architecture;
@@ -40,6 +53,17 @@ public class Disassembler {
         return endianness;
     }
 
+    /**
+     * @return the options every session of this disassembler starts with
+     */
+    public DisassemblyOptions getOptions() {
+        return options;
+    }
+
+    public void setOptions(DisassemblyOptions options) {
+        this.options = options;
+    }
+
     public void setBits(byte bits) {
         backend.setBits(bits);
     }
@@ -61,17 +85,123 @@ public class Disassembler {
     }
 
     public Instruction[] disassemble(byte[] code) {
-        Program program = Program.withCode(code);
+        return disassemble(Program.withCode(code));
+    }
+
+    /**
+     * Disassembles a source without copying it onto the heap, see {@link un.darknet.disassembly.input.MappedByteSource}.
+     *
+     * @param input the code
+     * @return the instructions
+     */
+    public Instruction[] disassemble(ByteSource input) {
+        return disassemble(Program.withInput(input));
+    }
+
+    /**
+     * Disassembles chunks of the input in parallel on the common pool.
+     * The result is identical to {@link #disassemble(byte[])}, the chunk size is taken from the {@link DisassemblyOptions}.
+     *
+     * @param code the code
+     * @return the instructions
+     */
+    public Instruction[] disassembleParallel(byte[] code) {
+        return disassembleParallel(new ArrayByteSource(code), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @see #disassembleParallel(byte[])
+     * @param input the code
+     * @param pool  the pool to decode on
+     * @return the instructions
+     */
+    public Instruction[] disassembleParallel(ByteSource input, ForkJoinPool pool) {
+        return disassemble(Program.withInput(input), (program, length) -> backend.processParallel(program, 0, length, pool));
+    }
+
+    /**
+     * Disassembles only the code reachable from the entry points, following jumps and calls, on the common pool.
+     * Data between functions is not decoded.
+     *
+     * @param code        the code
+     * @param entryPoints offsets in the code where execution starts
+     * @return the instructions ordered by the offset they were decoded from
+     */
+    public Instruction[] disassembleRecursive(byte[] code, long... entryPoints) {
+        return disassembleRecursive(new ArrayByteSource(code), ForkJoinPool.commonPool(), entryPoints);
+    }
+
+    /**
+     * @see #disassembleRecursive(byte[], long...)
+     * @param input       the code
+     * @param pool        the pool to decode on
+     * @param entryPoints offsets in the input where execution starts
+     * @return the instructions
+     */
+    public Instruction[] disassembleRecursive(ByteSource input, ForkJoinPool pool, long... entryPoints) {
+        return disassemble(Program.withInput(input), (program, length) -> backend.processRecursive(program, 0, length, entryPoints, pool));
+    }
+
+    /**
+     * Disassembles without retaining instructions, every instruction is passed to the visitor as soon as it is decoded.
+     * Labels are not resolved.
+     *
+     * @param code    the code
+     * @param visitor receives the instructions, return false to stop
+     * @return the number of instructions passed to the visitor
+     */
+    public long disassemble(byte[] code, InstructionVisitor visitor) {
+        return disassemble(new ArrayByteSource(code), visitor);
+    }
+
+    /**
+     * @see #disassemble(byte[], InstructionVisitor)
+     */
+    public long disassemble(ByteSource input, InstructionVisitor visitor) {
+        return backend.process(input, 0, input.length(), options, visitor);
+    }
+
+    /**
+     * Disassembles lazily, an instruction is decoded on every call to {@link Iterator#next()}.
+     * Labels are not resolved.
+     *
+     * @param code the code
+     * @return an iterator over the instructions in address order
+     */
+    public Iterator<Instruction> iterate(byte[] code) {
+        return iterate(new ArrayByteSource(code));
+    }
+
+    /**
+     * @see #iterate(byte[])
+     */
+    public Iterator<Instruction> iterate(ByteSource input) {
+        return backend.iterator(input, 0, input.length(), options);
+    }
+
+    private Instruction[] disassemble(Program program) {
+        return disassemble(program, (p, length) -> backend.process(p, 0, length));
+    }
+
+    private Instruction[] disassemble(Program program, Strategy strategy) {
+        program.setOptions(options);
 
         try {
-            backend.process(program, 0, code.length);
+            strategy.process(program, program.getInput().length());
         } catch (IOException e) {
             throw new DisassemblerException(e.getMessage(), e);
         } catch (InvalidInstructionException e) {
-            e.printStackTrace();
+            throw new DisassemblerException(e.getMessage(), e);
         }
 
         return program.instructions.toArray(new Instruction[0]);
     }
 
+    /**
+     * One of the ways {@link PlatformDisassembler} can process a whole program.
+     */
+    private interface Strategy {
+        void process(Program program, long length) throws IOException, InvalidInstructionException;
+    }
+
 }
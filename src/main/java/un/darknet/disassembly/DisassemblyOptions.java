@@ -0,0 +1,110 @@
+package un.darknet.disassembly;
+
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.decoding.Diagnostics;
+import un.darknet.disassembly.decoding.ParallelSweep;
+import un.darknet.disassembly.labels.LabelScheme;
+import un.darknet.disassembly.operand.OperandObject;
+import un.darknet.disassembly.operand.OperandObjectPool;
+
+/**
+ * Settings of a single disassembly session.
+ * These replace process wide statics, so disassemblies with different settings
+ * can run side by side. Configure the options before handing them to a session,
+ * they are read but never modified by the disassembler.
+ */
+public class DisassemblyOptions {
+
+    private LabelScheme labelScheme;
+    private OperandObjectPool operandPool;
+    private int chunkSize;
+    private DecodeMode decodeMode;
+    private Diagnostics diagnostics;
+    private boolean labelTargets;
+
+    public DisassemblyOptions() {
+        this.labelScheme = LabelScheme.getGlobalScheme();
+        this.operandPool = OperandObject.pool;
+        this.chunkSize = ParallelSweep.DEFAULT_CHUNK_SIZE;
+        this.decodeMode = DecodeMode.FULL;
+        this.diagnostics = new Diagnostics();
+    }
+
+    public DisassemblyOptions(DisassemblyOptions other) {
+        this.labelScheme = other.labelScheme;
+        this.operandPool = other.operandPool;
+        this.chunkSize = other.chunkSize;
+        this.decodeMode = other.decodeMode;
+        this.diagnostics = new Diagnostics(); // counts belong to one session, only the log rate is a setting
+        this.diagnostics.setLogRate(other.diagnostics.getLogRate());
+        this.labelTargets = other.labelTargets;
+    }
+
+    /**
+     * @return the naming scheme for generated labels
+     */
+    public LabelScheme getLabelScheme() {
+        return labelScheme;
+    }
+
+    public void setLabelScheme(LabelScheme labelScheme) {
+        this.labelScheme = labelScheme;
+    }
+
+    /**
+     * @return the pool operand objects are interned in, shared by default
+     */
+    public OperandObjectPool getOperandPool() {
+        return operandPool;
+    }
+
+    public void setOperandPool(OperandObjectPool operandPool) {
+        this.operandPool = operandPool;
+    }
+
+    /**
+     * @return how many bytes a worker of a parallel disassembly starts decoding at once
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return how much of every instruction is decoded, operands can be decoded lazily or skipped entirely
+     */
+    public DecodeMode getDecodeMode() {
+        return decodeMode;
+    }
+
+    public void setDecodeMode(DecodeMode decodeMode) {
+        this.decodeMode = decodeMode;
+    }
+
+    /**
+     * @return where decoders count invalid and unhandled instructions, every options instance has its own
+     */
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * @return whether branch and call targets are labelled while a program is processed,
+     * instead of by {@link PlatformDisassembler#resolveLabels(un.darknet.disassembly.data.Program)} afterwards
+     */
+    public boolean isLabelTargets() {
+        return labelTargets;
+    }
+
+    public void setLabelTargets(boolean labelTargets) {
+        this.labelTargets = labelTargets;
+    }
+
+}
@@ -1,17 +1,30 @@
 package un.darknet.disassembly;
 
+import un.darknet.disassembly.data.Mnemonic;
 import un.darknet.disassembly.data.Opcode;
+import un.darknet.disassembly.listing.ListingFormatter;
 import un.darknet.disassembly.operand.Operand;
 
 public class GenericOpcode implements Opcode {
 
-    private final String mnemonic;
+    private final Mnemonic mnemonic;
     private final long size;
     private final Operand[] operands;
 
     public GenericOpcode(String mnemonic, long size, Operand... operands) {
 
-        this.mnemonic = mnemonic;
+        this(Mnemonic.of(mnemonic).getId(), size, operands);
+
+    }
+
+    /**
+     * @param mnemonic the mnemonic id, see {@link Mnemonic}
+     * @param size     the opcode size in bytes
+     * @param operands the operands
+     */
+    public GenericOpcode(int mnemonic, long size, Operand... operands) {
+
+        this.mnemonic = Mnemonic.get(mnemonic);
         this.operands = operands;
         this.size = size;
 
@@ -23,7 +36,22 @@ public class GenericOpcode implements Opcode {
      */
     @Override
     public String mnemonic() {
-        return mnemonic.toLowerCase();
+        return mnemonic.getLowerName();
+    }
+
+    /**
+     * @return The opcode mnemonic as it was decoded.
+     */
+    public String getName() {
+        return mnemonic.getName();
+    }
+
+    /**
+     * @return The opcode mnemonic id.
+     */
+    @Override
+    public int mnemonicId() {
+        return mnemonic.getId();
     }
 
     /**
@@ -44,17 +72,6 @@ public class GenericOpcode implements Opcode {
 
     @Override
     public String toString() {
-        if (operands == null || operands.length == 0)
-            return mnemonic;
-
-        StringBuilder sb = new StringBuilder();
-        sb.append(mnemonic);
-        sb.append(" ");
-        for (Operand operand : operands) {
-            sb.append(operand.toString());
-            sb.append(", ");
-        }
-        sb.delete(sb.length() - 2, sb.length());
-        return sb.toString();
+        return ListingFormatter.DEFAULT.format(this, new StringBuilder()).toString();
     }
 }
@@ -0,0 +1,21 @@
+package un.darknet.disassembly;
+
+import un.darknet.disassembly.data.Instruction;
+
+/**
+ * Receives instructions as they are decoded, see {@link Disassembler#disassemble(byte[], InstructionVisitor)}.
+ * Nothing is retained by the disassembler, the visitor decides what to keep.
+ */
+@FunctionalInterface
+public interface InstructionVisitor {
+
+    /**
+     * Called for every decoded instruction in address order.
+     * Invalid instructions are passed as instructions with an invalid opcode.
+     *
+     * @param instruction the decoded instruction
+     * @return true to continue, false to stop disassembling
+     */
+    boolean visit(Instruction instruction);
+
+}
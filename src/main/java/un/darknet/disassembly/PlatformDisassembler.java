@@ -1,12 +1,16 @@
 package un.darknet.disassembly;
 
+import un.darknet.disassembly.data.Instruction;
 import un.darknet.disassembly.data.Program;
 import un.darknet.disassembly.exception.DisassemblerException;
 import un.darknet.disassembly.exception.InvalidInstructionException;
+import un.darknet.disassembly.input.ByteSource;
 import un.darknet.disassembly.labels.Label;
 
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public interface PlatformDisassembler {
 
@@ -47,16 +51,87 @@ public interface PlatformDisassembler {
 
     /**
      * Pass in a program and it will be disassembled.
-     * This method builds the instructions but also directly resolves labels.
+     * This method builds the instructions but also directly resolves labels
+     * if {@link DisassemblyOptions#isLabelTargets()} is set.
      *
      * @param program the program to disassemble
-     * @param start   the start offset
+     * @param start   the start offset in {@link Program#getInput()}
      * @param length  how much to disassemble
      */
-    void process(Program program, int start, int length) throws IOException, InvalidInstructionException;
+    void process(Program program, long start, long length) throws IOException, InvalidInstructionException;
+
+    /**
+     * Like {@link #process(Program, long, long)}, but decodes chunks of {@link DisassemblyOptions#getChunkSize()} bytes
+     * in parallel. The program receives the same instructions as with a sequential disassembly.
+     * Platforms which can not decode in parallel disassemble sequentially.
+     *
+     * @param program the program to disassemble
+     * @param start   the start offset in {@link Program#getInput()}
+     * @param length  how much to disassemble
+     * @param pool    the pool to decode on
+     */
+    default void processParallel(Program program, long start, long length, ForkJoinPool pool) throws IOException, InvalidInstructionException {
+        process(program, start, length);
+    }
+
+    /**
+     * Disassembles only the code reachable from the entry points by following jumps and calls,
+     * instead of sweeping over the whole range. Independent code paths are decoded in parallel.
+     * The program receives the instructions ordered by the position they were decoded from.
+     *
+     * @param program     the program to disassemble
+     * @param start       the start offset in {@link Program#getInput()}
+     * @param length      how much to disassemble
+     * @param entryPoints offsets relative to start where decoding begins
+     * @param pool        the pool to decode on
+     * @throws DisassemblerException if the platform does not support recursive descent
+     */
+    default void processRecursive(Program program, long start, long length, long[] entryPoints, ForkJoinPool pool) throws IOException, InvalidInstructionException {
+        throw new DisassemblerException("Recursive descent is not supported for " + getArchitecture());
+    }
+
+    /**
+     * Decodes instructions lazily, one per call to {@link Iterator#next()}.
+     * No instructions are retained, labels are not resolved.
+     *
+     * @param input   the code
+     * @param start   the start offset in the input
+     * @param length  how much to disassemble
+     * @param options the session settings
+     * @return an iterator over the instructions in address order
+     */
+    Iterator<Instruction> iterator(ByteSource input, long start, long length, DisassemblyOptions options);
+
+    /**
+     * Pushes every instruction to a visitor as soon as it is decoded.
+     * No instructions are retained, labels are not resolved.
+     *
+     * @param input   the code
+     * @param start   the start offset in the input
+     * @param length  how much to disassemble
+     * @param options the session settings
+     * @param visitor receives the instructions, may stop the disassembly
+     * @return the number of instructions passed to the visitor
+     */
+    default long process(ByteSource input, long start, long length, DisassemblyOptions options, InstructionVisitor visitor) {
+
+        Iterator<Instruction> instructions = iterator(input, start, length, options);
+
+        long count = 0;
+        while (instructions.hasNext()) {
+            count++;
+            if (!visitor.visit(instructions.next()))
+                break;
+        }
+
+        return count;
+
+    }
 
     /**
      * Resolves the labels for a disassembled program.
+     * Only needed if the targets were not labelled by {@link #process(Program, long, long)},
+     * constants which already have a label keep it.
      * @param program a disassembled program
      * @return a map of labels to their offsets
      */
@@ -0,0 +1,244 @@
+package un.darknet.disassembly.X86;
+
+import un.darknet.disassembly.data.Mnemonic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static un.darknet.disassembly.X86.Operations.*;
+
+/**
+ * Decode statistics of a {@link X86Decoder}, kept per opcode and combination of prefixes.
+ * <p>
+ * Every decode is counted with the bytes it consumed and the number of operands it decoded.
+ * The key is made of the prefixes only, flags set by the operation string of the opcode are not prefixes.
+ * Timing every decode would cost more than most decodes, so only every {@link #getSampleInterval()}th decode is
+ * timed and the time of a key is estimated from its samples.
+ * A profile is not thread safe, give every decoder its own and {@link #merge(DecodeProfile) merge} them afterwards.
+ */
+public class DecodeProfile {
+
+    /**
+     * The prefix flags a key is made of, the segment is only recorded as being overridden.
+     */
+    public static final int PREFIX_MASK = PREFIX_OPERAND | PREFIX_ADDRESS | PREFIX_SEGMENT_OVERRIDE
+            | PREFIX_LOCK | PREFIX_REP | PREFIX_REPNE | PREFIX_REX;
+
+    private static final int OPCODES = 256;
+    private static final int KEYS = OPCODES * (PREFIX_MASK + 1);
+    private static final String[] PREFIX_NAMES = {"66", "67", "SEG", "LOCK", "REP", "REPNE", "REX"};
+
+    private final long[] counts = new long[KEYS];
+    private final long[] bytes = new long[KEYS];
+    private final long[] operandsDecoded = new long[KEYS];
+    private final long[] sampledNanos = new long[KEYS];
+    private final long[] samples = new long[KEYS];
+    private final int[] mnemonics = new int[KEYS]; // of the last decode, the reg field may pick others
+
+    private final int sampleMask;
+    private long decodes;
+
+    public DecodeProfile() {
+        this(16);
+    }
+
+    /**
+     * @param sampleInterval every how many decodes one is timed, a power of two
+     */
+    public DecodeProfile(int sampleInterval) {
+
+        if (sampleInterval <= 0 || Integer.bitCount(sampleInterval) != 1)
+            throw new IllegalArgumentException("Sample interval must be a power of two: " + sampleInterval);
+
+        this.sampleMask = sampleInterval - 1;
+
+    }
+
+    /**
+     * @return whether the next decode is timed
+     */
+    boolean sample() {
+        return (decodes++ & sampleMask) == 0;
+    }
+
+    /**
+     * @param opcode   the opcode after the prefixes
+     * @param flags    the flags set by the prefixes, see {@link un.darknet.disassembly.decoding.DecoderContext#getPrefixes()}
+     * @param mnemonic the mnemonic id
+     * @param size     the bytes consumed
+     * @param operands the number of operands decoded
+     * @param nanos    the time the decode took, negative if it was not timed
+     */
+    void record(int opcode, long flags, int mnemonic, int size, int operands, long nanos) {
+
+        int key = key(opcode, flags);
+
+        counts[key]++;
+        bytes[key] += size;
+        operandsDecoded[key] += operands;
+        mnemonics[key] = mnemonic;
+
+        if (nanos >= 0) {
+            sampledNanos[key] += nanos;
+            samples[key]++;
+        }
+
+    }
+
+    static int key(int opcode, long flags) {
+        return (int) (flags & PREFIX_MASK) << 8 | opcode & (OPCODES - 1);
+    }
+
+    /**
+     * Adds the statistics of another profile to this one.
+     */
+    public void merge(DecodeProfile other) {
+
+        for (int key = 0; key < KEYS; key++) {
+            if (other.counts[key] == 0) continue;
+            counts[key] += other.counts[key];
+            bytes[key] += other.bytes[key];
+            operandsDecoded[key] += other.operandsDecoded[key];
+            sampledNanos[key] += other.sampledNanos[key];
+            samples[key] += other.samples[key];
+            mnemonics[key] = other.mnemonics[key];
+        }
+
+        decodes += other.decodes;
+
+    }
+
+    public void reset() {
+
+        for (long[] array : new long[][] {counts, bytes, operandsDecoded, sampledNanos, samples})
+            Arrays.fill(array, 0);
+        decodes = 0;
+
+    }
+
+    public int getSampleInterval() {
+        return sampleMask + 1;
+    }
+
+    /**
+     * @return the number of decodes recorded
+     */
+    public long getDecodes() {
+        return decodes;
+    }
+
+    /**
+     * @return the recorded opcode and prefix combinations, the ones with the most estimated time first
+     */
+    public List<Entry> entries() {
+
+        List<Entry> entries = new ArrayList<>();
+        for (int key = 0; key < KEYS; key++) {
+            if (counts[key] > 0)
+                entries.add(new Entry(key));
+        }
+
+        entries.sort((a, b) -> {
+            int compare = Double.compare(b.getEstimatedNanos(), a.getEstimatedNanos());
+            return compare != 0 ? compare : Long.compare(b.getCount(), a.getCount());
+        });
+
+        return entries;
+
+    }
+
+    /**
+     * @return a table of all entries, sorted like {@link #entries()}
+     */
+    public String report() {
+
+        List<Entry> entries = entries();
+
+        double total = 0;
+        for (Entry entry : entries)
+            total += entry.getEstimatedNanos();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-6s %-10s %-18s %12s %12s %10s %10s %8s%n",
+                "Opcode", "Mnemonic", "Prefixes", "Count", "Bytes", "Operands", "ns/decode", "Time %"));
+
+        for (Entry entry : entries) {
+            sb.append(String.format("0x%02X   %-10s %-18s %12d %12d %10d %10.1f %7.2f%%%n",
+                    entry.getOpcode(), entry.getMnemonic(), entry.getPrefixNames(), entry.getCount(), entry.getBytes(),
+                    entry.getOperandsDecoded(), entry.getNanosPerDecode(),
+                    total > 0 ? 100 * entry.getEstimatedNanos() / total : 0));
+        }
+
+        return sb.toString();
+
+    }
+
+    /**
+     * Statistics of one opcode and prefix combination.
+     */
+    public class Entry {
+
+        private final int key;
+
+        Entry(int key) {
+            this.key = key;
+        }
+
+        public int getOpcode() {
+            return key & (OPCODES - 1);
+        }
+
+        /**
+         * @return the prefix flags, see {@link #PREFIX_MASK}
+         */
+        public int getPrefixes() {
+            return key >>> 8;
+        }
+
+        public String getPrefixNames() {
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < PREFIX_NAMES.length; i++) {
+                if ((getPrefixes() & 1 << i) == 0) continue;
+                if (sb.length() > 0) sb.append('|');
+                sb.append(PREFIX_NAMES[i]);
+            }
+
+            return sb.length() == 0 ? "-" : sb.toString();
+
+        }
+
+        public String getMnemonic() {
+            return Mnemonic.get(mnemonics[key]).getName();
+        }
+
+        public long getCount() {
+            return counts[key];
+        }
+
+        public long getBytes() {
+            return bytes[key];
+        }
+
+        /**
+         * @return the number of operands decoded, not how many were allocated
+         */
+        public long getOperandsDecoded() {
+            return operandsDecoded[key];
+        }
+
+        /**
+         * @return the average of the timed decodes, 0 if none was timed
+         */
+        public double getNanosPerDecode() {
+            return samples[key] == 0 ? 0 : (double) sampledNanos[key] / samples[key];
+        }
+
+        public double getEstimatedNanos() {
+            return getNanosPerDecode() * counts[key];
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+package un.darknet.disassembly.X86;
+
+import un.darknet.disassembly.GenericOpcode;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.decoding.Decoder;
+import un.darknet.disassembly.decoding.Diagnostics;
+import un.darknet.disassembly.exception.DisassemblerException;
+import un.darknet.disassembly.input.ArrayByteSource;
+import un.darknet.disassembly.input.ByteSource;
+import un.darknet.disassembly.operand.Operand;
+import un.darknet.disassembly.operand.OperandObjectPool;
+
+import java.io.IOException;
+
+/**
+ * Opcode which only knows its mnemonic and size until the operands are accessed.
+ * It keeps where it was decoded from and the decoder settings, and decodes itself again on the first call to {@link #operands()}.
+ * The source must stay readable as long as the opcode is used.
+ * <p>
+ * Operands are decoded by one decoder per thread from a copy of the instruction bytes, so materializing allocates
+ * nothing but the operands, whatever the source is.
+ */
+public class LazyOpcode extends GenericOpcode {
+
+    private static final ThreadLocal<OperandDecoder> DECODERS = new ThreadLocal<>();
+
+    private final ByteSource source;
+    private final long offset;      // decode start in the source, prefixes included
+    private final int decodedSize;  // bytes from offset, prefixes included
+    private final X86Disassembler platform;
+    private final byte bits;
+    private final OperandObjectPool pool;
+
+    private volatile Operand[] operands;
+
+    public LazyOpcode(int mnemonic, long size, ByteSource source, long offset, int decodedSize,
+                      X86Disassembler platform, byte bits, OperandObjectPool pool) {
+
+        super(mnemonic, size, (Operand[]) null);
+        this.source = source;
+        this.offset = offset;
+        this.decodedSize = decodedSize;
+        this.platform = platform;
+        this.bits = bits;
+        this.pool = pool;
+
+    }
+
+    /**
+     * @return true once the operands were decoded
+     */
+    @Override
+    public boolean isMaterialized() {
+        return operands != null;
+    }
+
+    /**
+     * Decodes the operands on the first call.
+     * Concurrent first calls may both decode, they produce equal operands.
+     */
+    @Override
+    public Operand[] operands() {
+
+        Operand[] result = operands;
+        if (result == null)
+            operands = result = materialize();
+
+        return result;
+
+    }
+
+    private Operand[] materialize() {
+
+        OperandDecoder operandDecoder = DECODERS.get();
+        if (operandDecoder == null || !operandDecoder.matches(platform))
+            DECODERS.set(operandDecoder = new OperandDecoder(platform));
+
+        try {
+            return operandDecoder.decode(source, offset, decodedSize, bits, pool);
+        } catch (IOException e) {
+            throw new DisassemblerException("Could not decode operands at 0x" + Long.toHexString(offset), e);
+        }
+
+    }
+
+    /**
+     * Decoder of a thread with the buffer it decodes from.
+     */
+    private static final class OperandDecoder {
+
+        final X86Disassembler platform;
+        final boolean generated;
+        final byte[] bytes = new byte[Decoder.WINDOW]; // longer instructions are invalid, never lazy
+        final ArrayByteSource input = new ArrayByteSource(bytes);
+        final X86Decoder decoder;
+
+        OperandDecoder(X86Disassembler platform) {
+
+            this.platform = platform;
+            this.generated = platform.isGeneratedDecoder();
+            this.decoder = platform.newFullDecoder();
+            decoder.setReuseContext(true); // only the operands are kept
+            decoder.setDiagnostics(Diagnostics.NONE); // counted when the instruction was decoded
+
+        }
+
+        boolean matches(X86Disassembler platform) {
+            return this.platform == platform && generated == platform.isGeneratedDecoder();
+        }
+
+        Operand[] decode(ByteSource source, long offset, int size, byte bits, OperandObjectPool pool) throws IOException {
+
+            source.get(offset, bytes, 0, size);
+            decoder.feed(input, 0, size);
+            decoder.setBits(bits);
+            decoder.setOperandPool(pool);
+
+            Instruction instruction = decoder.nextInstruction();
+            return instruction.getOperands();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+package un.darknet.disassembly.X86;
+
+import un.darknet.disassembly.exception.DisassemblerException;
+
+import java.util.Arrays;
+
+/**
+ * Compiled form of the {@link Operations#ops} strings.
+ * Every operation string is translated once, at class load, into an int[] of micro-ops.
+ * A micro-op keeps its code in the lower 8 bits and an inline argument in the upper bits,
+ * which replaces the digits that were previously pushed onto the decoder stack at runtime.
+ */
+public class MicroOps {
+
+    public static final int CODE_MASK = 0xFF;
+    public static final int ARG_SHIFT = 8;
+
+    public static final int REGRM = 1;              // 'R' reg/rm pair following the opcode
+    public static final int RM = 2;                 // 'm' rm operand only
+    public static final int OPCODE_REGISTER_RM = 3; // 'M' register from the opcode (may be a segment register)
+    public static final int REGISTER = 4;           // 'r' fixed register, arg: register index
+    public static final int IMMEDIATE = 5;          // 'i' immediate sized by the operand size
+    public static final int OPCODE_REGISTER = 6;    // 'U' register from the lower 3 bits of the opcode
+    public static final int FLAG = 7;               // 'F' decoder flag, arg: index into decoderFlags
+    public static final int PREFIX = 8;             // 'p' x86 prefix, arg: index into x86Prefix
+    public static final int LEGACY = 9;             // 'l' 8-bit legacy mode
+    public static final int OVERRIDE = 10;          // 'O' size override, arg: size
+    public static final int SIZED_MNEMONIC = 11;    // 's' pick mnemonic by operand size
+    public static final int HANDLER = 12;           // 'h' opcode specific handler
+    public static final int DEBUG = 13;             // 'D' debug
+    public static final int UNHANDLED = 14;         // unknown operation, arg: the character
+
+    public static final int[] EMPTY = new int[0];
+
+    /**
+     * Compiled programs indexed by opcode.
+     * Opcodes which have a mnemonic but no operation string compile to {@link #EMPTY}.
+     */
+    public static final int[][] PROGRAMS = compileAll(Operations.ops, Mnemonics.Mnemonics.length);
+
+    public static int code(int microOp) {
+        return microOp & CODE_MASK;
+    }
+
+    public static int arg(int microOp) {
+        return microOp >>> ARG_SHIFT;
+    }
+
+    static int[][] compileAll(String[] operations, int count) {
+
+        int[][] programs = new int[Math.max(count, operations.length)][];
+
+        for (int opcode = 0; opcode < programs.length; opcode++) {
+            programs[opcode] = opcode < operations.length ? compile(opcode, operations[opcode]) : EMPTY;
+        }
+
+        return programs;
+
+    }
+
+    /**
+     * Compiles a single operation string into its micro-op program.
+     *
+     * @param opcode    the opcode the operation belongs to, only used for error reporting
+     * @param operation the operation string
+     * @return the micro-op program
+     * @throws DisassemblerException if an operation needs an argument but none was given
+     */
+    public static int[] compile(int opcode, String operation) {
+
+        if (operation == null || operation.isEmpty())
+            return EMPTY;
+
+        int[] program = new int[operation.length()];
+        int size = 0;
+
+        // digits are bound at compile time to the operation which consumes them
+        int[] args = new int[operation.length()];
+        int argc = 0;
+
+        for (char c : operation.toCharArray()) {
+
+            if (Character.isDigit(c)) {
+                args[argc++] = c - '0';
+                continue;
+            }
+
+            switch (c) {
+                case 'R': program[size++] = REGRM; break;
+                case 'm': program[size++] = RM; break;
+                case 'M': program[size++] = OPCODE_REGISTER_RM; break;
+                case 'i': program[size++] = IMMEDIATE; break;
+                case 'U': program[size++] = OPCODE_REGISTER; break;
+                case 'l': program[size++] = LEGACY; break;
+                case 's': program[size++] = SIZED_MNEMONIC; break;
+                case 'h': program[size++] = HANDLER; break;
+                case 'D': program[size++] = DEBUG; break;
+                case 'r':
+                case 'F':
+                case 'p':
+                case 'O': {
+
+                    if (argc == 0)
+                        throw new DisassemblerException(String.format(
+                                "Operation '%c' of opcode 0x%X (\"%s\") is missing its argument", c, opcode, operation));
+
+                    int arg = args[--argc];
+                    int code;
+
+                    if (c == 'r') code = REGISTER;
+                    else if (c == 'F') {
+                        code = FLAG;
+                        arg = checkIndex(opcode, operation, arg - 1, Operations.decoderFlags.length);
+                    } else if (c == 'p') {
+                        code = PREFIX;
+                        arg = checkIndex(opcode, operation, arg - 1, Operations.x86Prefix.length);
+                    } else code = OVERRIDE;
+
+                    program[size++] = code | (arg << ARG_SHIFT);
+                    break;
+
+                }
+                default:
+                    program[size++] = UNHANDLED | (c << ARG_SHIFT);
+            }
+
+        }
+
+        return Arrays.copyOf(program, size);
+
+    }
+
+    private static int checkIndex(int opcode, String operation, int index, int length) {
+
+        if (index < 0 || index >= length)
+            throw new DisassemblerException(String.format(
+                    "Operation argument %d of opcode 0x%X (\"%s\") is out of range", index + 1, opcode, operation));
+
+        return index;
+
+    }
+
+}
@@ -1,5 +1,7 @@
 package un.darknet.disassembly.X86;
 
+import un.darknet.disassembly.data.Mnemonic;
+
 /**
  * These are the opcodes for the x86_64 architecture.
  *
@@ -86,4 +88,42 @@ public class Mnemonics {
 
     };
 
+    /**
+     * Mnemonic ids indexed by opcode.
+     * {@link Mnemonic#NONE} where the mnemonic is picked from {@link #MNEMONIC_VARIANTS} while decoding.
+     */
+    public static final int[] MNEMONIC_IDS = new int[Mnemonics.length];
+
+    /**
+     * Mnemonic ids of opcodes whose mnemonic depends on the reg field or the operand size, otherwise null.
+     */
+    public static final int[][] MNEMONIC_VARIANTS = new int[Mnemonics.length][];
+
+    public static final int PREFIX_ID = Mnemonic.of("PREFIX").getId();
+    public static final int UNKNOWN_ID = Mnemonic.UNKNOWN.getId();
+
+    static {
+
+        for (int opcode = 0; opcode < Mnemonics.length; opcode++) {
+
+            Object mnemonic = Mnemonics[opcode];
+
+            if (mnemonic instanceof String[]) {
+
+                String[] names = (String[]) mnemonic;
+                int[] ids = new int[names.length];
+                for (int i = 0; i < names.length; i++)
+                    ids[i] = Mnemonic.of(names[i]).getId();
+
+                MNEMONIC_IDS[opcode] = Mnemonic.NONE;
+                MNEMONIC_VARIANTS[opcode] = ids;
+
+            } else {
+                MNEMONIC_IDS[opcode] = Mnemonic.of((String) mnemonic).getId();
+            }
+
+        }
+
+    }
+
 }
@@ -0,0 +1,26 @@
+package un.darknet.disassembly.X86;
+
+import un.darknet.disassembly.decoding.DecoderContext;
+import un.darknet.disassembly.operand.Operand;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Opcode specific operand decoder, invoked by the 'h' operation.
+ * Handlers are registered once in {@link X86Decoder#HANDLERS}.
+ */
+@FunctionalInterface
+public interface OpcodeHandler {
+
+    /**
+     * Decode the operands of the current instruction.
+     *
+     * @param decoder  the decoder which reads the instruction
+     * @param ctx      the decoder context
+     * @param operands the operands list to append to
+     * @throws IOException if an error occurs while reading the stream
+     */
+    void handle(X86Decoder decoder, DecoderContext ctx, List<Operand> operands) throws IOException;
+
+}
@@ -73,7 +73,7 @@ public class Operations {
      * r: read 1 specific register (must prefix: arch: 0-3 where 3 is 64bit, reg: 0-7)
      * a: add 2 from stack and push result (e.g. stack: [rsp, rsi] -> "rsp, rsi")
      * i: push immediate value (must prefix: size: 0-8 where 8 is 64bit)
-     * S: override segment (must prefix: index: 0-7) (e.g. "0S" -> "ES:[")}
+     * S: override segment (must prefix: index: 0-7) (e.g. "0S" -> "ES:[")
      * U: load 1 register based on opcode
      * O: set overflow to object in stack
      * F: will set decoder flags (shifted by 4 bytes)
@@ -81,6 +81,8 @@ public class Operations {
      * s: change mnemonic to depending on size (e.g. "mov" -> "movb", "movw", "movd")
      * h: calls an opcode specific handler
      * D: debug
+     * }
+     * The strings are compiled once into micro-op programs by {@link MicroOps}.
      */
     public static String[] ops = new String[]{
 
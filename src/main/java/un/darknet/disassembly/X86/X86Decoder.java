@@ -5,42 +5,129 @@ import un.darknet.disassembly.GenericOpcode;
 import un.darknet.disassembly.PlatformDisassembler;
 import un.darknet.disassembly.data.Instruction;
 import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.Mnemonic;
+import un.darknet.disassembly.decoding.DecodeStatus;
 import un.darknet.disassembly.decoding.Decoder;
 import un.darknet.disassembly.decoding.DecoderContext;
+import un.darknet.disassembly.decoding.Diagnostics;
+import un.darknet.disassembly.exception.DisassemblerException;
+import un.darknet.disassembly.exception.InvalidEncodingException;
 import un.darknet.disassembly.operand.Operand;
 import un.darknet.disassembly.operand.OperandObject;
 import un.darknet.disassembly.util.Logging;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.List;
 
-import static un.darknet.disassembly.X86.Mnemonics.Mnemonics;
+import static un.darknet.disassembly.X86.Mnemonics.*;
 import static un.darknet.disassembly.X86.Operations.*;
 import static un.darknet.disassembly.operand.Operand.*;
 
 public class X86Decoder extends Decoder {
 
-    Object mnemonic;
-    String operation;
+    /**
+     * Architectural limit of an x86 instruction, prefixes included.
+     * With at most 14 prefixes an instruction reads no more than 28 bytes, which fits the decoder {@link #WINDOW}.
+     */
+    public static final int MAX_INSTRUCTION_LENGTH = 15;
+
+    /**
+     * Handlers for the 'h' operation indexed by opcode.
+     * The upper 256 entries are reserved for the two byte (0x0F) opcode space.
+     */
+    static final OpcodeHandler[] HANDLERS = buildHandlers();
+
+    private DecodeProfile profile;
 
     public X86Decoder(PlatformDisassembler platform) {
         super(platform);
     }
 
+    /**
+     * Records every decode of this decoder in a profile, see {@link DecodeProfile}.
+     * Only full decodes are recorded, instructions a {@link X86LengthDecoder} builds from its tables are not.
+     *
+     * @param profile the profile, null to stop profiling
+     */
+    public void setProfile(DecodeProfile profile) {
+        this.profile = profile;
+    }
+
+    public DecodeProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public DecoderContext decodeNext() throws EOFException {
+
+        DecodeProfile profile = this.profile;
+        if (profile == null)
+            return super.decodeNext();
+
+        boolean sample = profile.sample();
+        long start = getPosition();
+        long begin = sample ? System.nanoTime() : 0;
+
+        DecoderContext ctx = super.decodeNext();
+
+        long nanos = sample ? System.nanoTime() - begin : -1;
+        Instruction instruction = ctx.getInstruction();
+        int mnemonic = instruction != null ? instruction.getMnemonicId() : Mnemonic.INVALID.getId();
+        int operands = ctx.isValid() ? ctx.getOperandBuffer().size() : 0; // not from the instruction, it may be lazy
+
+        profile.record(ctx.getOpcode(), ctx.getPrefixes(), mnemonic, (int) (getPosition() - start), operands, nanos);
+
+        return ctx;
+
+    }
+
+    static OpcodeHandler[] buildHandlers() {
+
+        OpcodeHandler[] handlers = new OpcodeHandler[512];
+
+        // handlers are named after their opcode, the generated decoder calls them by that name
+        handlers[0x9a] = X86Decoder::op9a;
+        handlers[0xa0] = X86Decoder::opa0;
+        handlers[0xa1] = X86Decoder::opa1;
+        handlers[0xa2] = X86Decoder::opa2;
+        handlers[0xa3] = X86Decoder::opa3;
+
+        // every opcode using 'h' must have a handler
+        StringBuilder missing = new StringBuilder();
+        for (int opcode = 0; opcode < MicroOps.PROGRAMS.length; opcode++) {
+            for (int microOp : MicroOps.PROGRAMS[opcode]) {
+                if (MicroOps.code(microOp) == MicroOps.HANDLER && handlers[opcode] == null) {
+                    missing.append(" 0x").append(Integer.toHexString(opcode));
+                    break;
+                }
+            }
+        }
+
+        if (missing.length() > 0)
+            throw new DisassemblerException("Missing opcode handlers for:" + missing);
+
+        return handlers;
+
+    }
+
     int getSize(boolean reg, DecoderContext ctx) {
 
+        return getSize(reg, ctx.getFlags().get(), bits);
+
+    }
+
+    static int getSize(boolean reg, long flags, byte bits) {
+
         int size = 2; // default: 32-bit
-        if (ctx.getFlags().has(PREFIX_LEGACY))
+        if ((flags & PREFIX_LEGACY) != 0)
             size = 0; // 8-bit
-        if (ctx.getFlags().has(PREFIX_REX) && platform.getBits() >= Bits.BITS_64) // has rex prefix and platform is 64-bit supports 64-bit
+        if ((flags & PREFIX_REX) != 0 && bits >= Bits.BITS_64) // has rex prefix and platform is 64-bit supports 64-bit
             size = 3; // 64-bit
-        if (ctx.getFlags().has(PREFIX_OPERAND) && reg) {
+        if ((flags & PREFIX_OPERAND) != 0 && reg) {
             size = 1; // 16-bit
         }
-        if(ctx.getFlags().has(PREFIX_ADDRESS) && !reg) {
+        if((flags & PREFIX_ADDRESS) != 0 && !reg) {
             size = 1; // 16-bit
         }
 
@@ -52,28 +139,38 @@ public class X86Decoder extends Decoder {
 
         int size = getSize(false, ctx);
 
-        if (ctx.getOverride() != null) {
+        if (ctx.hasOverride()) {
 
-            size = (int) ctx.getOverride();
+            size = ctx.getOverride();
 
         }
 
+        return readSized(size);
+
+    }
+
+    /**
+     * @param size 0-3 for 8 to 64 bit, see {@link #getSize(boolean, DecoderContext)}
+     * @return the value, 0 if nothing was read for an unknown size
+     */
+    long readSized(int size) {
+
         long n = 0;
-        if (size == 0) n = reader.readByte();
-        else if (size == 1) n = reader.readWord();
-        else if (size == 2) n = reader.readDword();
-        else if (size == 3) n = reader.readQword();
+        if (size == 0) n = readByte();
+        else if (size == 1) n = readWord();
+        else if (size == 2) n = readDword();
+        else if (size == 3) n = readQword();
 
         return n;
 
     }
 
-    public String decodeRegister(DecoderContext ctx, int reg, int setting) {
+    public String decodeRegister(DecoderContext ctx, int reg, int setting) throws IOException {
 
         // TODO: make this better
         if (ctx.getFlags().has(SEGMENT_REGISTER_REGRM)) { // reg is a segment register
             ctx.getFlags().unset(SEGMENT_REGISTER_REGRM); // one time flag
-            return Constants.SEGMENTS[reg];
+            return getSegment(reg);
         }
 
         return Constants.REGISTERS[setting][reg];
@@ -93,7 +190,7 @@ public class X86Decoder extends Decoder {
 
         operands.add(
                 new Operand(
-                        OperandObject.forRegister(
+                        pool.register(
                                 decodeRegister(ctx, reg, getSize(true, ctx))
                         )
                 )
@@ -104,7 +201,7 @@ public class X86Decoder extends Decoder {
 
     public void decodeRM(DecoderContext ctx, List<Operand> operands) throws IOException {
 
-        int val = reader.readByte();
+        int val = readByte();
         int mod = (val & 0xC0) >> 6;
         int rm = (val & 0x07);
 
@@ -115,13 +212,13 @@ public class X86Decoder extends Decoder {
 
             String register = decodeRegister(ctx, rm, regSize);
 
-            operands.add(new Operand(OperandObject.forRegister(register)));
+            operands.add(new Operand(pool.register(register)));
 
         } else if (mod == 0) {
 
             String register = decodeRegister(ctx, rm, regSize);
 
-            Operand op = new Operand(OperandObject.forRegister(register));
+            Operand op = new Operand(pool.register(register));
             op.types.set(TYPE_MEMORY | TYPE_REGISTER);
             operands.add(op);
 
@@ -129,11 +226,11 @@ public class X86Decoder extends Decoder {
 
         if (mod == 1 || mod == 2) { // 8 bit displacement
 
-            long displacement = mod == 1 ? reader.readByte() : reader.readDword();
+            long displacement = mod == 1 ? readByte() : readDword();
             String register = decodeRegister(ctx, rm, regSize);
 
-            OperandObject regObj = OperandObject.forRegister(register);
-            OperandObject dispObj = OperandObject.forImmediate(displacement);
+            OperandObject regObj = pool.register(register);
+            OperandObject dispObj = pool.immediate(displacement);
 
             Operand op = new Operand(regObj, dispObj);
             op.types.set(TYPE_MEMORY | TYPE_REGISTER | TYPE_CONSTANT);
@@ -149,7 +246,7 @@ public class X86Decoder extends Decoder {
         // [opcode]0 0  00  000 000
         //         s d  mod reg r/m
 
-        int val = reader.readByte();
+        int val = readByte();
 
         boolean s = (ctx.getOpcode() & 0x01) == 0x01;
         boolean d = (ctx.getOpcode() & 0x02) == 0x02 || ctx.getFlags().has(IGNORE_DIRECTION_BIT_REGRM);
@@ -161,10 +258,9 @@ public class X86Decoder extends Decoder {
         boolean disp = mod == 0 && rm == 5;
         boolean imm = ctx.getFlags().has(REGRM_IMMEDIATE); // has immediate flag
 
-        if (mnemonic instanceof String[]) {
+        if (ctx.getMnemonic() == Mnemonic.NONE && MNEMONIC_VARIANTS[ctx.getOpcode()] != null) {
 
-            String[] mnemonics = (String[]) mnemonic;
-            mnemonic = mnemonics[reg]; // reg field is the mnemonic
+            ctx.setMnemonic(MNEMONIC_VARIANTS[ctx.getOpcode()][reg]); // reg field is the mnemonic
 
         }
 
@@ -175,22 +271,22 @@ public class X86Decoder extends Decoder {
         if (d && !imm) {
             String register = decodeRegister(ctx, reg, regSize);
 
-            operands.add(new Operand(OperandObject.forRegister(register)));
+            operands.add(new Operand(pool.register(register)));
         }
 
         if (mod == 3) { // rm is a register
 
             String register = decodeRegister(ctx, rm, regSize);
 
-            operands.add(new Operand(OperandObject.forRegister(register)));
+            operands.add(new Operand(pool.register(register)));
 
         }
 
         if (mod == 0 && disp) { // displacement 4 bytes after
 
-            long displacement = reader.readDword();
+            long displacement = readDword();
 
-            Operand op = new Operand(OperandObject.forImmediate(displacement));
+            Operand op = new Operand(pool.immediate(displacement));
             op.types.set(TYPE_MEMORY | TYPE_CONSTANT);
 
             operands.add(op);
@@ -200,7 +296,7 @@ public class X86Decoder extends Decoder {
 
             String register = decodeRegister(ctx, rm, regSize);
 
-            Operand op = new Operand(OperandObject.forRegister(register));
+            Operand op = new Operand(pool.register(register));
             op.types.set(TYPE_MEMORY | TYPE_REGISTER);
             operands.add(op);
 
@@ -208,11 +304,11 @@ public class X86Decoder extends Decoder {
 
         if (mod == 1 || mod == 2) { // 8 bit displacement
 
-            long displacement = mod == 1 ? reader.readByte() : reader.readDword();
+            long displacement = mod == 1 ? readByte() : readDword();
             String register = decodeRegister(ctx, rm, regSize);
 
-            OperandObject regObj = OperandObject.forRegister(register);
-            OperandObject dispObj = OperandObject.forImmediate(displacement);
+            OperandObject regObj = pool.register(register);
+            OperandObject dispObj = pool.immediate(displacement);
 
             Operand op = new Operand(regObj, dispObj);
             op.types.set(TYPE_MEMORY | TYPE_REGISTER | TYPE_CONSTANT);
@@ -225,7 +321,7 @@ public class X86Decoder extends Decoder {
 
             long immediate = readBytes(ctx);
 
-            OperandObject immObj = OperandObject.forImmediate(immediate);
+            OperandObject immObj = pool.immediate(immediate);
             Operand op = new Operand(immObj);
             op.types.set(TYPE_CONSTANT);
             operands.add(op);
@@ -236,168 +332,141 @@ public class X86Decoder extends Decoder {
         if (!d & !imm) {
             String register = decodeRegister(ctx, reg, regSize);
 
-            operands.add(new Operand(OperandObject.forRegister(register)));
+            operands.add(new Operand(pool.register(register)));
         }
 
 
     }
 
 
-    Operand[] decodeOperands(DecoderContext ctx) throws IOException {
-
-        List<Operand> operands = new ArrayList<>();
-
-        for (char c : operation.toCharArray()) {
+    Operand[] decodeOperands(DecoderContext ctx, int[] program) throws IOException {
 
-            if (Character.isDigit(c)) ctx.push(c - '0');
-            else
-                switch (c) {
+        List<Operand> operands = ctx.getOperandBuffer();
+        operands.clear();
 
-                    case 'r': {
+        for (int microOp : program) {
 
-                        int reg = ctx.pop();
+            switch (microOp & MicroOps.CODE_MASK) {
 
-                        int mode = getSize(true, ctx);
+                case MicroOps.REGISTER: {
 
-                        String register = Constants.REGISTERS[mode][reg];
+                    int reg = microOp >>> MicroOps.ARG_SHIFT;
 
-                        operands.add(new Operand(OperandObject.forRegister(register)));
-                        break;
+                    int mode = getSize(true, ctx);
 
-                    }
+                    String register = Constants.REGISTERS[mode][reg];
 
-                    case 'D': {
+                    operands.add(new Operand(pool.register(register)));
+                    break;
 
-                        // print the flag value in binary
-                        // print mnemonic and operands and operand object
-                        System.out.println("Current Opcode: " + mnemonic + "(0x" + Integer.toHexString(ctx.getOpcode()) + ")");
-                        System.out.println("At: " + ctx.getAddress());
-                        long flag = ctx.getFlags().backing;
-                        StringBuilder sb = new StringBuilder();
-                        for (int i = 0; i < 64; i++) {
-                            sb.append((flag & (1L << i)) == 0 ? '0' : '1');
-                        }
-                        System.out.println("Flags:\n" + sb);
-                        System.out.println("Operation String: " + operation);
-                        int i =1;
-                        for (Operand op : operands) {
-                            System.out.printf("Operand [%d|%s]: %s, objects: %d\n", i, Long.toBinaryString(op.types.backing), op.toString(), op.objects.length);
-                            i++;
-                        }
-                        break;
-
-                    }
+                }
 
-                    case 'R':
-                        decodeREGRM(ctx, operands);
-                        break;
-                    case 'm':
-                        decodeRM(ctx, operands);
-                        break;
-                    case 'M':
-                        decodeR(ctx, operands);
-                        break;
+                case MicroOps.DEBUG:
+                    debug(ctx, operands);
+                    break;
 
-                    case 'i': {
+                case MicroOps.REGRM:
+                    decodeREGRM(ctx, operands);
+                    break;
+                case MicroOps.RM:
+                    decodeRM(ctx, operands);
+                    break;
+                case MicroOps.OPCODE_REGISTER_RM:
+                    decodeR(ctx, operands);
+                    break;
 
-                        int size = getSize(true, ctx);
+                case MicroOps.IMMEDIATE: {
 
-                        long n = 0;
-                        if (size == 0) n = reader.readByte();
-                        else if (size == 1) n = reader.readWord();
-                        else if (size == 2) n = reader.readDword();
-                        else if (size == 3) n = reader.readQword();
+                    long n = readSized(getSize(true, ctx));
 
-                        operands.add(new Operand(OperandObject.forImmediate(n)));
-                        break;
+                    operands.add(new Operand(pool.immediate(n)));
+                    break;
 
-                    }
+                }
 
-                    case 'U': {
+                case MicroOps.OPCODE_REGISTER: {
 
-                        int reg = ctx.getOpcode() & 0x07; // extract first 3 bits
+                    int reg = ctx.getOpcode() & 0x07; // extract first 3 bits
 
-                        int size = getSize(true, ctx);
+                    int size = getSize(true, ctx);
 
-                        String register = Constants.REGISTERS[size][reg];
+                    String register = Constants.REGISTERS[size][reg];
 
-                        operands.add(new Operand(OperandObject.forRegister(register)));
-                        break;
+                    operands.add(new Operand(pool.register(register)));
+                    break;
 
-                    }
+                }
 
-                    case 'F': {
+                case MicroOps.FLAG: {
 
-                        int flagIndex = ctx.pop();
-                        long flag = decoderFlags[flagIndex - 1];
+                    ctx.getFlags().set(decoderFlags[microOp >>> MicroOps.ARG_SHIFT]);
+                    break;
 
-                        ctx.getFlags().set(flag);
+                }
 
-                        break;
+                case MicroOps.PREFIX: {
 
+                    ctx.getFlags().set(x86Prefix[microOp >>> MicroOps.ARG_SHIFT]);
+                    break;
 
-                    }
+                }
 
-                    case 'p': {
+                case MicroOps.LEGACY: {
+                    ctx.getFlags().set(PREFIX_LEGACY);
+                    break;
+                }
 
-                        int prefixIndex = ctx.pop();
-                        int prefix = x86Prefix[prefixIndex - 1];
+                case MicroOps.OVERRIDE: {
 
-                        ctx.getFlags().set(prefix);
+                    ctx.setOverride(microOp >>> MicroOps.ARG_SHIFT);
+                    break;
 
-                        break;
+                }
 
-                    }
+                case MicroOps.SIZED_MNEMONIC: {
 
-                    case 'l': {
-                        ctx.getFlags().set(PREFIX_LEGACY);
-                        break;
-                    }
+                    ctx.setMnemonic(MNEMONIC_VARIANTS[ctx.getOpcode()][getSize(true, ctx) - 1]);
 
-                    case 'O': {
+                    break;
 
-                        ctx.setOverride(ctx.pop());
-                        break;
+                }
 
-                    }
+                case MicroOps.HANDLER: {
 
-                    case 's': {
+                    HANDLERS[ctx.getOpcode()].handle(this, ctx, operands);
+                    break;
 
-                        String[] names = (String[]) mnemonic;
-                        mnemonic = names[getSize(true, ctx) - 1];
+                }
 
-                        break;
+                default:
+                    unhandled(ctx);
 
-                    }
+            }
 
-                    case 'h': {
+        }
 
-                        // find a handler method for this opcode
-                        String methodName = "op" + Integer.toHexString(ctx.getOpcode());
-                        try {
+        return operands.toArray(new Operand[0]);
 
-                            Method method = getClass().getMethod(methodName, DecoderContext.class, List.class);
-                            method.invoke(this, ctx, operands);
-                        } catch (NoSuchMethodException e) {
-                            throw new RuntimeException("No handler method " + methodName);
-                        } catch (InvocationTargetException | IllegalAccessException e) {
-                            throw new RuntimeException("Error invoking handler method " + methodName);
-                        }
+    }
 
-                        break;
+    void debug(DecoderContext ctx, List<Operand> operands) {
 
-                    }
+        if (!Logging.LOGGER.isDebugEnabled())
+            return;
 
-                    default: {
-                        Logging.warn("Unhandled operation: " + c);
-                    }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s(0x%x) at 0x%x, flags %s, operation \"%s\"", Mnemonic.get(ctx.getMnemonic()),
+                ctx.getOpcode(), ctx.getAddress(), Long.toBinaryString(ctx.getFlags().get()), ops[ctx.getOpcode()]));
 
-                }
+        for (Operand op : operands)
+            sb.append(String.format("%n  %s [%s], objects: %d", op, Long.toBinaryString(op.types.backing), op.objects.length));
 
-        }
+        Logging.LOGGER.debug(sb.toString());
 
-        return operands.toArray(new Operand[0]);
+    }
 
+    void unhandled(DecoderContext ctx) {
+        diagnostics.report(Diagnostics.Reason.UNHANDLED_OPERATION, ctx.getOpcode(), ctx.getAddress());
     }
 
     /**
@@ -412,15 +481,20 @@ public class X86Decoder extends Decoder {
 
         if (!prefixToFlag.containsKey(ctx.getOpcode())) {
 
-            Logging.warn("Unhandled prefix: " + ctx.getOpcode());
+            diagnostics.report(Diagnostics.Reason.UNHANDLED_PREFIX, ctx.getOpcode(), ctx.getAddress());
             return;
 
         }
 
         int flag = Operations.prefixToFlag.get(ctx.getOpcode());
         ctx.getFlags().set(flag);
+        ctx.setPrefixes(ctx.getFlags().get()); // before the operation string adds its own flags
+
+        // keeps every read of an instruction inside the decoder window
+        if (consumed() >= MAX_INSTRUCTION_LENGTH)
+            throw new InvalidEncodingException(DecodeStatus.TOO_LONG, consumed());
 
-        int newOpcode = reader.readByte();
+        int newOpcode = readByte();
         //update context
         ctx.setOpcode(newOpcode);
         ctx.setAddress(ctx.getAddress() + 1);
@@ -429,24 +503,31 @@ public class X86Decoder extends Decoder {
 
     }
 
-    void decodeOperation(DecoderContext ctx) {
+    /**
+     * Looks up the mnemonic of the current opcode and stores it in the context.
+     *
+     * @param ctx the decoder context
+     * @return the compiled operation of the opcode
+     */
+    int[] decodeOperation(DecoderContext ctx) {
 
         int opcode = ctx.getOpcode();
 
-        if (opcode >= Mnemonics.length) {
-            mnemonic = "UNKNOWN";
-            operation = "";
-            return;
+        if (opcode >= MNEMONIC_IDS.length) {
+            ctx.setMnemonic(UNKNOWN_ID);
+            return MicroOps.EMPTY;
         }
 
-        mnemonic = Mnemonics[opcode];
-
-        operation = ops[opcode];
+        ctx.setMnemonic(MNEMONIC_IDS[opcode]);
 
+        return MicroOps.PROGRAMS[opcode];
 
     }
 
-    String getSegment(int segment) {
+    String getSegment(int segment) throws IOException {
+
+        if (segment >= Constants.SEGMENTS.length) // only 6 of the 8 encodings are segment registers
+            throw new InvalidEncodingException(DecodeStatus.INVALID_SEGMENT, segment);
 
         return Constants.SEGMENTS[segment];
 
@@ -454,7 +535,7 @@ public class X86Decoder extends Decoder {
 
     boolean isRex(DecoderContext ctx) {
 
-        return ctx.getOpcode() >= 0x40 && ctx.getOpcode() <= 0x4f && platform.getBits() == Bits.BITS_64;
+        return ctx.getOpcode() >= 0x40 && ctx.getOpcode() <= 0x4f && bits == Bits.BITS_64;
 
     }
 
@@ -466,16 +547,16 @@ public class X86Decoder extends Decoder {
     @Override
     public void decode(DecoderContext ctx) throws IOException {
 
-        decodeOperation(ctx);
+        int[] program = decodeOperation(ctx);
 
-        if (mnemonic.equals("PREFIX") || isRex(ctx)) { // is a prefix
+        if (ctx.getMnemonic() == PREFIX_ID || isRex(ctx)) { // is a prefix
 
             decodePrefix(ctx);
             return;
 
         }
 
-        Operand[] operands = decodeOperands(ctx);
+        Operand[] operands = decodeOperands(ctx, program);
 
         if (ctx.getFlags().has(PREFIX_SEGMENT_OVERRIDE)) {
 
@@ -484,12 +565,11 @@ public class X86Decoder extends Decoder {
                 if (operand.types.has(TYPE_MEMORY)) {
                     // set segment override
 
-                    String seg = getSegment((int) ctx.getFlags()
-                            .mask(SEGMENT_OVERRIDE_MASK)   // xxxx000000000000
-                            .shift(SEGMENT_OVERRIDE_SHIFT) // 000000000000xxxx
-                            .get());
+                    String seg = getSegment((int) ((ctx.getFlags().get()
+                            & SEGMENT_OVERRIDE_MASK)     // xxxx000000000000
+                            >> SEGMENT_OVERRIDE_SHIFT)); // 000000000000xxxx
 
-                    OperandObject segment = OperandObject.forSegment(seg);
+                    OperandObject segment = pool.segment(seg);
                     operand.append(segment);
 
                 }
@@ -497,11 +577,15 @@ public class X86Decoder extends Decoder {
 
         }
 
-        long size = stream.getPos() - ctx.getAddress(); // pos - start
+        long size = getPosition() - ctx.getAddress(); // pos - start
 
-        GenericOpcode op = new GenericOpcode((String) mnemonic, size, operands);
+        int mnemonic = ctx.getMnemonic();
+        if (mnemonic == Mnemonic.NONE) // variants were never picked
+            mnemonic = Mnemonic.INVALID.getId();
 
-        InstructionType type = InstructionType.get((String) mnemonic);
+        GenericOpcode op = new GenericOpcode(mnemonic, size, operands);
+
+        InstructionType type = Mnemonic.get(mnemonic).getType();
 
         Instruction instruction = new Instruction(ctx.getAddress(), op, type);
 
@@ -513,13 +597,11 @@ public class X86Decoder extends Decoder {
 
         long address = readBytes(ctx);
 
-        int segment = reader.readWord(); // ptr16
-
-        String hex = String.format("0x%X", segment);
+        int segment = readWord(); // ptr16
 
-        OperandObject segmentObj = OperandObject.forSegment(hex);
+        OperandObject segmentObj = pool.selector(segment);
 
-        OperandObject offsetObj = OperandObject.forImmediate(address);
+        OperandObject offsetObj = pool.immediate(address);
 
         operands.add(new Operand(segmentObj, offsetObj));
 
@@ -527,12 +609,12 @@ public class X86Decoder extends Decoder {
 
     public void opa0(DecoderContext ctx, List<Operand> operands) throws IOException {
 
-        long address = reader.readWord();
+        long address = readWord();
 
-        Operand memory = new Operand(OperandObject.forImmediate(address));
+        Operand memory = new Operand(pool.immediate(address));
         memory.types.set(TYPE_MEMORY);
 
-        Operand register = new Operand(OperandObject.forRegister("AL"));
+        Operand register = new Operand(pool.register("AL"));
 
         operands.add(register);
         operands.add(memory);
@@ -543,10 +625,10 @@ public class X86Decoder extends Decoder {
 
         long address = readBytes(ctx); // read actual correct bytes
 
-        Operand memory = new Operand(OperandObject.forImmediate(address));
+        Operand memory = new Operand(pool.immediate(address));
         memory.types.set(TYPE_MEMORY);
 
-        Operand register = new Operand(OperandObject.forRegister(Constants.REGISTERS[getSize(true, ctx)][0]));
+        Operand register = new Operand(pool.register(Constants.REGISTERS[getSize(true, ctx)][0]));
 
         operands.add(register);
         operands.add(memory);
@@ -555,12 +637,12 @@ public class X86Decoder extends Decoder {
 
     public void opa2(DecoderContext ctx, List<Operand> operands) throws IOException {
 
-        long address = reader.readWord();
+        long address = readWord();
 
-        Operand memory = new Operand(OperandObject.forImmediate(address));
+        Operand memory = new Operand(pool.immediate(address));
         memory.types.set(TYPE_MEMORY);
 
-        Operand register = new Operand(OperandObject.forRegister("AL"));
+        Operand register = new Operand(pool.register("AL"));
 
         operands.add(memory);
         operands.add(register);
@@ -571,10 +653,10 @@ public class X86Decoder extends Decoder {
 
         long address = readBytes(ctx); // read actual correct bytes
 
-        Operand memory = new Operand(OperandObject.forImmediate(address));
+        Operand memory = new Operand(pool.immediate(address));
         memory.types.set(TYPE_MEMORY);
 
-        Operand register = new Operand(OperandObject.forRegister(Constants.REGISTERS[getSize(true, ctx)][0]));
+        Operand register = new Operand(pool.register(Constants.REGISTERS[getSize(true, ctx)][0]));
 
         operands.add(memory);
         operands.add(register);
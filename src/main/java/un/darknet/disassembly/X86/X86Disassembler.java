@@ -2,27 +2,38 @@ package un.darknet.disassembly.X86;
 
 import un.darknet.disassembly.Architecture;
 import un.darknet.disassembly.Bits;
+import un.darknet.disassembly.DisassemblyOptions;
 import un.darknet.disassembly.Endianness;
 import un.darknet.disassembly.PlatformDisassembler;
 import un.darknet.disassembly.data.Instruction;
-import un.darknet.disassembly.data.InstructionType;
-import un.darknet.disassembly.data.InvalidOpcode;
 import un.darknet.disassembly.data.Program;
-import un.darknet.disassembly.decoding.DecoderContext;
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.decoding.InstructionIterator;
+import un.darknet.disassembly.decoding.ParallelSweep;
+import un.darknet.disassembly.decoding.RecursiveDescent;
 import un.darknet.disassembly.exception.DisassemblerException;
-import un.darknet.disassembly.exception.InvalidInstructionException;
+import un.darknet.disassembly.input.ByteSource;
 import un.darknet.disassembly.labels.Label;
 import un.darknet.disassembly.labels.LabelType;
 import un.darknet.disassembly.operand.Operand;
 import un.darknet.disassembly.operand.OperandObject;
 
-import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class X86Disassembler implements PlatformDisassembler {
 
     public static final byte DEF_BIT_SIZE = Bits.BITS_32;
-    byte currentBitSize;
+
+    /**
+     * Decoder generated from the opcode tables at build time, null if it is not on the classpath.
+     */
+    private static final Constructor<? extends X86Decoder> GENERATED_DECODER = findGeneratedDecoder();
+
+    volatile byte currentBitSize;
+    volatile boolean generatedDecoder = GENERATED_DECODER != null;
 
     public X86Disassembler() {
 
@@ -30,6 +41,42 @@ public class X86Disassembler implements PlatformDisassembler {
 
     }
 
+    @SuppressWarnings("unchecked")
+    private static Constructor<? extends X86Decoder> findGeneratedDecoder() {
+
+        try {
+            Class<?> type = Class.forName(X86Decoder.class.getPackage().getName() + ".GeneratedX86Decoder");
+            return (Constructor<? extends X86Decoder>) type.getConstructor(PlatformDisassembler.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return null;
+        }
+
+    }
+
+    /**
+     * @return true if the generated decoder is on the classpath
+     */
+    public static boolean hasGeneratedDecoder() {
+        return GENERATED_DECODER != null;
+    }
+
+    /**
+     * Selects the decoder for full decoding: the one generated from the opcode tables, which is used by default
+     * when it is available, or the micro-op interpreter of {@link X86Decoder}.
+     *
+     * @param generatedDecoder true to use the generated decoder
+     * @throws DisassemblerException if the generated decoder is not on the classpath
+     */
+    public void setGeneratedDecoder(boolean generatedDecoder) {
+        if (generatedDecoder && GENERATED_DECODER == null)
+            throw new DisassemblerException("The generated decoder is not on the classpath");
+        this.generatedDecoder = generatedDecoder;
+    }
+
+    public boolean isGeneratedDecoder() {
+        return generatedDecoder;
+    }
+
     /**
      * Returns if the disassembler supports the bit size.
      * {@link Bits#atLeast(byte, byte)}
@@ -83,110 +130,210 @@ public class X86Disassembler implements PlatformDisassembler {
 
 
     @Override
-    public void process(Program program, int start, int length) throws IOException {
+    public void process(Program program, long start, long length) {
 
-        X86Decoder decoder = new X86Decoder(this);
-        decoder.feed(program.code, start, length);
+        boolean label = program.getOptions().isLabelTargets();
+        process(program.getInput(), start, length, program.getOptions(), instruction -> {
+            addInstruction(program, instruction, label); // add instruction to program
+            return true;
+        });
 
-        while (decoder.hasNext()) {
+        if (label)
+            program.getLabels().getReferences(); // fills Label.references
 
-            try {
-                DecoderContext ctx = decoder.next(); // result of decoding
+    }
 
-                if (ctx.getInstruction() == null) continue; // error occurred
+    @Override
+    public void processParallel(Program program, long start, long length, ForkJoinPool pool) {
 
-                program.addInstruction(ctx.getInstruction()); // add instruction to program
+        boolean label = program.getOptions().isLabelTargets();
+        DisassemblyOptions options = program.getOptions();
+        ParallelSweep sweep = new ParallelSweep(() -> newDecoder(program.getInput(), start, length, options), length, options.getChunkSize());
 
-            } catch (InvalidInstructionException e) {
-                program.addInstruction(new Instruction(e.getPos(), e.getPartialOpcode(), InstructionType.OTHER));
-            }
-        }
+        sweep.run(pool, instruction -> {
+            addInstruction(program, instruction, label);
+            return true;
+        });
 
+        if (label)
+            program.getLabels().getReferences(); // fills Label.references
 
     }
 
     @Override
-    public Map<Long, Label> resolveLabels(Program program) {
+    public void processRecursive(Program program, long start, long length, long[] entryPoints, ForkJoinPool pool) {
 
-        // iterate over instructions
-        for (int i = 0; i < program.instructions.size(); i++) {
+        boolean label = program.getOptions().isLabelTargets();
+        DisassemblyOptions options = program.getOptions();
+        RecursiveDescent descent = new RecursiveDescent(() -> newDecoder(program.getInput(), start, length, options), length);
 
-            // get instruction
-            Instruction instruction = program.instructions.get(i);
+        descent.run(pool, entryPoints, instruction -> {
+            addInstruction(program, instruction, label);
+            return true;
+        });
 
-            // iterate over operands
-            for (Operand operand : instruction.getOperands()) {
+        if (label)
+            program.getLabels().getReferences(); // fills Label.references
 
-                // iterate over operand's objects
-                for (OperandObject object : operand.getObjects()) {
+    }
 
-                    if (object.type == Operand.TYPE_CONSTANT) { // is a constant reference
+    @Override
+    public Iterator<Instruction> iterator(ByteSource input, long start, long length, DisassemblyOptions options) {
+        return new InstructionIterator(newDecoder(input, start, length, options));
+    }
 
-                        long location;
-                        LabelType type = LabelType.UNKNOWN;
+    /**
+     * Creates a decoder which is fed with the range.
+     * Unless the {@link DisassemblyOptions#getDecodeMode()} is full, this is a {@link X86LengthDecoder}.
+     *
+     * @param input   the code
+     * @param start   the start offset in the input
+     * @param length  how much to decode
+     * @param options the session settings
+     * @return the decoder
+     */
+    public X86Decoder newDecoder(ByteSource input, long start, long length, DisassemblyOptions options) {
+
+        X86Decoder decoder;
+        if (options.getDecodeMode() == DecodeMode.FULL) {
+            decoder = newFullDecoder();
+        } else {
+            X86LengthDecoder lengthDecoder = new X86LengthDecoder(this); // builds instructions from its tables
+            lengthDecoder.setMode(options.getDecodeMode());
+            decoder = lengthDecoder;
+        }
 
-                        switch (instruction.type) {
+        decoder.setReuseContext(true); // only the instruction is kept
+        decoder.setOperandPool(options.getOperandPool());
+        decoder.setDiagnostics(options.getDiagnostics());
+        decoder.feed(input, start, length);
 
-                            case JUMP_RELATIVE: {
+        return decoder;
 
-                                location = instruction.location + instruction.getLength() + (long)object.value;
-                                type = LabelType.LABEL;
-                                break;
+    }
 
-                            }
+    X86Decoder newFullDecoder() {
 
-                            case JUMP: {
+        if (!generatedDecoder)
+            return new X86Decoder(this);
 
-                                location = (long) object.value;
-                                type = LabelType.LABEL;
-                                break;
+        try {
+            return GENERATED_DECODER.newInstance(this);
+        } catch (ReflectiveOperationException e) {
+            throw new DisassemblerException("Could not create the generated decoder", e);
+        }
 
-                            }
+    }
 
-                            case CALL: {
+    /**
+     * Creates a decoder for finding instruction boundaries without building instructions, see {@link X86LengthDecoder}.
+     *
+     * @param input  the code
+     * @param start  the start offset in the input
+     * @param length how much to decode
+     * @return the decoder
+     */
+    public X86LengthDecoder newLengthDecoder(ByteSource input, long start, long length) {
 
-                                location = (long) object.value;
-                                type = LabelType.FUNCTION;
-                                break;
+        X86LengthDecoder decoder = new X86LengthDecoder(this);
+        decoder.feed(input, start, length);
 
-                            }
+        return decoder;
 
-                            case LOGIC: {
+    }
 
-                                location = (long) object.value;
-                                type = LabelType.DATA;
-                                break;
+    private static void addInstruction(Program program, Instruction instruction, boolean label) {
 
-                            }
+        if (label)
+            label(program, instruction);
 
-                            default: {
+        program.addInstruction(instruction);
 
-                                location = instruction.location + instruction.getLength();
+    }
 
-                            }
+    /**
+     * Resolves the labels of instructions which were not labelled while they were decoded into the program,
+     * see {@link DisassemblyOptions#isLabelTargets()}.
+     */
+    @Override
+    public Map<Long, Label> resolveLabels(Program program) {
+
+        program.getLabels().clearReferences(); // every instruction is referenced again
 
-                        }
-                        // generate label
-                        if (program.getLabels().containsKey(location)) continue; // already resolved
+        for (int i = 0; i < program.instructions.size(); i++) {
 
-                        // generate label
-                        Label label = new Label(location, type);
+            Instruction instruction = program.instructions.get(i);
 
-                        // add label to program
-                        program.addLabel(label);
+            // write back for lists which do not hold on to the instruction objects
+            if (label(program, instruction))
+                program.instructions.set(i, instruction);
 
-                        // set reference to label
-                        object.label = label;
+        }
 
-                    }
+        program.getLabels().getReferences(); // fills Label.references
 
+        return program.getLabels();
+
+    }
+
+    /**
+     * Points the constant operands of a branch or call at labels for their targets
+     * and records the references in the labels of the program.
+     * Other instructions have no targets, their constants are values or displacements.
+     *
+     * @param program     the program owning the labels
+     * @param instruction the instruction
+     * @return true if a label was set
+     */
+    static boolean label(Program program, Instruction instruction) {
+
+        LabelType type;
+        switch (instruction.type) {
+            case JUMP_RELATIVE:
+            case JUMP:
+                type = LabelType.LABEL;
+                break;
+            case CALL:
+                type = LabelType.FUNCTION;
+                break;
+            default:
+                return false;
+        }
+
+        boolean labelled = false;
+
+        for (Operand operand : instruction.getOperands()) {
+
+            if (operand.types.has(Operand.TYPE_MEMORY))
+                continue; // the constant is where the target is stored
+
+            OperandObject[] objects = operand.getObjects();
+            for (int j = 0; j < objects.length; j++) {
+
+                OperandObject object = objects[j];
+                if (object.type != Operand.TYPE_CONSTANT)
+                    continue;
+
+                if (object.label != null) { // labelled before, maybe while decoding into another program
+                    if (program.getLabels().get(object.label.address) == null)
+                        program.addLabel(object.label);
+                    program.getLabels().reference(program.getLabels().get(object.label.address), instruction);
+                    continue;
                 }
 
+                long target = instruction.getTarget((long) object.value);
+                Label label = program.getLabels().label(target, type, program.getOptions().getLabelScheme());
+                program.getLabels().reference(label, instruction);
+
+                // set reference to label, on a copy since pooled objects are shared
+                objects[j] = object.withLabel(label);
+                labelled = true;
+
             }
 
         }
 
-        return program.getLabels();
+        return labelled;
 
     }
 
@@ -0,0 +1,497 @@
+package un.darknet.disassembly.X86;
+
+import un.darknet.disassembly.Bits;
+import un.darknet.disassembly.GenericOpcode;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.InvalidOpcode;
+import un.darknet.disassembly.data.Mnemonic;
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.decoding.DecodeStatus;
+import un.darknet.disassembly.decoding.Diagnostics;
+import un.darknet.disassembly.exception.DisassemblerException;
+import un.darknet.disassembly.operand.Operand;
+
+import java.io.IOException;
+
+import static un.darknet.disassembly.X86.Mnemonics.*;
+import static un.darknet.disassembly.X86.Operations.*;
+
+/**
+ * Decoder which is fast at finding instruction boundaries, see {@link #nextLength()} and {@link #nextBoundaries(int[], int, int)}.
+ * <p>
+ * Lengths come from tables indexed by the operand size, address size and REX prefixes seen so far and the opcode.
+ * The tables are built from the compiled {@link MicroOps} programs, so they always agree with {@link X86Decoder},
+ * including instructions it treats as invalid. Only the ModRM byte is inspected at runtime, no operands are built.
+ * {@link #next()} still decodes full instructions, {@link #nextInstruction()} builds them according to the {@link DecodeMode}.
+ */
+public class X86LengthDecoder extends X86Decoder {
+
+    // prefixes which change the length of an instruction
+    static final int STATE_OPERAND = 1;
+    static final int STATE_ADDRESS = 2;
+    static final int STATE_REX = 4;
+    static final int STATES = 8;
+
+    // table entry
+    static final int KIND_MASK = 0x7;
+    static final int PLAIN = 0;          // no ModRM byte
+    static final int REGRM = 1;          // ModRM byte with a disp32 for mod 0 and rm 5
+    static final int RM = 2;             // ModRM byte
+    static final int PREFIX = 3;         // prefix, the state bits are stored at PREFIX_SHIFT
+    static final int NO_INSTRUCTION = 4; // unhandled prefix, decodes to nothing
+    static final int SEGMENT = 1 << 3;   // the first register of the ModRM byte is a segment register
+    static final int DIRECTION = 1 << 4; // the first register is reg, it is read before the displacement
+    static final int MEMORY = 1 << 5;    // a handler decodes a memory operand
+    static final int BRANCH = 1 << 6;    // jump or call without a ModRM byte, the fixed bytes start with its target
+    static final int FIXED_SHIFT = 8;    // bytes after the ModRM byte and displacement
+    static final int PREFIX_SHIFT = 16;
+    static final int STATE_MASK = STATES - 1;
+    static final int SEGMENT_PREFIX = 1 << 19; // prefix is a segment override, the segment is stored at SEGMENT_SHIFT
+    static final int SEGMENT_SHIFT = 20;
+
+    static final int BY_REG = -2; // mnemonic is picked by the reg field of the ModRM byte
+
+    static final int[] TABLE_32 = buildTable(Bits.BITS_32);
+    static final int[] TABLE_64 = buildTable(Bits.BITS_64);
+    static final int[] MNEMONICS_32 = buildMnemonics(Bits.BITS_32);
+    static final int[] MNEMONICS_64 = buildMnemonics(Bits.BITS_64);
+
+    private static final Operand[] NO_OPERANDS = new Operand[0];
+
+    private DecodeMode mode = DecodeMode.LAZY_OPERANDS;
+
+    // result of the last measure
+    private int mnemonic;   // Mnemonic.NONE if nothing was decoded
+    private int prefixes;
+    private DecodeStatus status;
+    private int lastOpcode; // the opcode after the prefixes
+    private int read;
+    private boolean branch; // whether target holds the target operand of the last instruction
+    private long target;    // as read, see Instruction#getTarget
+
+    private final X86Disassembler x86; // the platform, lazy opcodes decode their operands with it
+
+    public X86LengthDecoder(X86Disassembler platform) {
+        super(platform);
+        this.x86 = platform;
+    }
+
+    /**
+     * @param mode how {@link #nextInstruction()} builds instructions, {@link DecodeMode#FULL} decodes like {@link X86Decoder}
+     */
+    public void setMode(DecodeMode mode) {
+        this.mode = mode;
+    }
+
+    public DecodeMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Builds the instruction from the length tables, the operands are either decoded when they are first
+     * accessed ({@link DecodeMode#LAZY_OPERANDS}) or never ({@link DecodeMode#MNEMONIC_ONLY}).
+     * Location, length, mnemonic and type are the same as with full decoding.
+     */
+    @Override
+    public Instruction nextInstruction() throws IOException {
+
+        if (mode == DecodeMode.FULL)
+            return super.nextInstruction();
+
+        long start = getPosition();
+        long remaining = length - start;
+        int size = nextLength();
+
+        if (read > remaining) // read into the zero padding, like Decoder#decodeNext
+            status = DecodeStatus.TRUNCATED;
+
+        if (status != DecodeStatus.VALID) {
+            diagnostics.report(Diagnostics.Reason.of(status), lastOpcode, start);
+            return new Instruction(start, new InvalidOpcode(size), InstructionType.OTHER);
+        }
+
+        if (mnemonic == Mnemonic.NONE) { // a prefix without a flag, like X86Decoder#decodePrefix
+            diagnostics.report(Diagnostics.Reason.UNHANDLED_PREFIX, lastOpcode, start);
+            return null;
+        }
+
+        int length = size - prefixes;
+        GenericOpcode opcode = mode == DecodeMode.MNEMONIC_ONLY
+                ? new GenericOpcode(mnemonic, length, NO_OPERANDS)
+                : new LazyOpcode(mnemonic, length, source, offset + start, size, x86, bits, pool);
+
+        return new Instruction(start + prefixes, opcode, Mnemonic.get(mnemonic).getType());
+
+    }
+
+    /**
+     * Takes the target from the bytes read while measuring, unless instructions are decoded fully.
+     * Branches with a ModRM byte only have register or memory operands, so they have no targets.
+     */
+    @Override
+    public int branchTargets(Instruction instruction, long[] targets) {
+
+        if (mode == DecodeMode.FULL)
+            return super.branchTargets(instruction, targets);
+
+        if (!branch || targets.length == 0)
+            return 0;
+
+        targets[0] = instruction.getTarget(target);
+        return 1;
+
+    }
+
+    static int[] buildTable(byte bits) {
+
+        int[] table = new int[STATES << 8];
+
+        for (int state = 0; state < STATES; state++) {
+            for (int opcode = 0; opcode < 256; opcode++) {
+
+                int entry;
+                boolean rex = opcode >= 0x40 && opcode <= 0x4f && bits == Bits.BITS_64;
+
+                if (opcode >= MNEMONIC_IDS.length)
+                    entry = PLAIN; // unknown opcode
+                else if (MNEMONIC_IDS[opcode] == PREFIX_ID || rex) {
+                    Integer flag = prefixToFlag.get(opcode);
+                    entry = flag == null ? NO_INSTRUCTION : prefix(flag);
+                } else {
+                    entry = measure(opcode, MicroOps.PROGRAMS[opcode], toFlags(state), bits);
+                    if ((entry & KIND_MASK) == PLAIN && (entry >>> FIXED_SHIFT) > 0
+                            && isBranch(mnemonic(opcode, MicroOps.PROGRAMS[opcode], toFlags(state), bits)))
+                        entry |= BRANCH;
+                }
+
+                table[state << 8 | opcode] = entry;
+
+            }
+        }
+
+        return table;
+
+    }
+
+    static int[] buildMnemonics(byte bits) {
+
+        int[] mnemonics = new int[STATES << 8];
+
+        for (int state = 0; state < STATES; state++) {
+            for (int opcode = 0; opcode < 256; opcode++) {
+
+                int id;
+                if (opcode >= MNEMONIC_IDS.length)
+                    id = UNKNOWN_ID;
+                else if (MNEMONIC_IDS[opcode] == PREFIX_ID || (opcode >= 0x40 && opcode <= 0x4f && bits == Bits.BITS_64))
+                    id = Mnemonic.NONE;
+                else
+                    id = mnemonic(opcode, MicroOps.PROGRAMS[opcode], toFlags(state), bits);
+
+                mnemonics[state << 8 | opcode] = id;
+
+            }
+        }
+
+        return mnemonics;
+
+    }
+
+    /**
+     * Picks the mnemonic like {@link X86Decoder} does.
+     *
+     * @return the mnemonic id or {@link #BY_REG}
+     */
+    static int mnemonic(int opcode, int[] program, long flags, byte bits) {
+
+        int id = MNEMONIC_IDS[opcode];
+
+        for (int microOp : program) {
+
+            switch (MicroOps.code(microOp)) {
+                case MicroOps.REGRM:
+                    if (id == Mnemonic.NONE && MNEMONIC_VARIANTS[opcode] != null)
+                        id = BY_REG;
+                    if ((opcode & 0x01) == 0) flags |= PREFIX_LEGACY; // s bit
+                    break;
+                case MicroOps.PREFIX:
+                    flags |= x86Prefix[MicroOps.arg(microOp)];
+                    break;
+                case MicroOps.LEGACY:
+                    flags |= PREFIX_LEGACY;
+                    break;
+                case MicroOps.SIZED_MNEMONIC: {
+                    int variant = getSize(true, flags, bits) - 1;
+                    if (variant < 0)
+                        throw unsupported(opcode, "sized mnemonic in legacy mode");
+                    id = MNEMONIC_VARIANTS[opcode][variant];
+                    break;
+                }
+            }
+
+        }
+
+        return id == Mnemonic.NONE ? Mnemonic.INVALID.getId() : id;
+
+    }
+
+    /**
+     * Runs a program like {@link X86Decoder#decodeOperands} does, but only adds up the bytes it reads.
+     */
+    static int measure(int opcode, int[] program, long flags, byte bits) {
+
+        int kind = PLAIN;
+        int entry = 0;
+        int fixed = 0;
+        int override = -1;
+
+        for (int microOp : program) {
+
+            switch (MicroOps.code(microOp)) {
+
+                case MicroOps.REGRM: {
+
+                    if (kind != PLAIN)
+                        throw unsupported(opcode, "more than one ModRM byte");
+                    kind = REGRM;
+
+                    if ((opcode & 0x01) == 0) flags |= PREFIX_LEGACY; // s bit
+
+                    if ((flags & SEGMENT_REGISTER_REGRM) != 0) {
+                        if ((flags & REGRM_IMMEDIATE) != 0)
+                            throw unsupported(opcode, "segment register with an immediate");
+                        entry |= SEGMENT;
+                        if ((opcode & 0x02) != 0 || (flags & IGNORE_DIRECTION_BIT_REGRM) != 0) // d bit
+                            entry |= DIRECTION;
+                        flags &= ~SEGMENT_REGISTER_REGRM;
+                    }
+
+                    if ((flags & REGRM_IMMEDIATE) != 0)
+                        fixed += bytes(override >= 0 ? override : getSize(false, flags, bits));
+
+                    break;
+
+                }
+
+                case MicroOps.RM:
+                case MicroOps.OPCODE_REGISTER_RM: {
+
+                    if ((flags & SEGMENT_REGISTER_REGRM) != 0)
+                        throw unsupported(opcode, "segment register outside of REGRM");
+
+                    if (MicroOps.code(microOp) == MicroOps.RM) {
+                        if (kind != PLAIN)
+                            throw unsupported(opcode, "more than one ModRM byte");
+                        kind = RM;
+                    }
+
+                    break;
+
+                }
+
+                case MicroOps.IMMEDIATE:
+                    fixed += bytes(getSize(true, flags, bits));
+                    break;
+                case MicroOps.FLAG:
+                    flags |= decoderFlags[MicroOps.arg(microOp)];
+                    break;
+                case MicroOps.PREFIX:
+                    flags |= x86Prefix[MicroOps.arg(microOp)];
+                    break;
+                case MicroOps.LEGACY:
+                    flags |= PREFIX_LEGACY;
+                    break;
+                case MicroOps.OVERRIDE:
+                    override = MicroOps.arg(microOp);
+                    break;
+                case MicroOps.HANDLER:
+                    fixed += handlerBytes(opcode, override >= 0 ? override : getSize(false, flags, bits));
+                    if (opcode >= 0xa0 && opcode <= 0xa3) entry |= MEMORY; // moffs
+                    break;
+
+            }
+
+        }
+
+        return kind | entry | fixed << FIXED_SHIFT;
+
+    }
+
+    /**
+     * Bytes read by the handlers of {@link X86Decoder#HANDLERS}.
+     *
+     * @param size the size {@link X86Decoder#readBytes} would read
+     */
+    static int handlerBytes(int opcode, int size) {
+
+        switch (opcode) {
+            case 0x9a: return bytes(size) + 2; // ptr16:32
+            case 0xa0:
+            case 0xa2: return 2;
+            case 0xa1:
+            case 0xa3: return bytes(size);
+            default: throw unsupported(opcode, "handler without a length");
+        }
+
+    }
+
+    static boolean isBranch(int mnemonic) {
+
+        switch (Mnemonic.get(mnemonic).getType()) {
+            case JUMP:
+            case JUMP_RELATIVE:
+            case CALL:
+                return true;
+            default:
+                return false;
+        }
+
+    }
+
+    static int prefix(int flag) {
+
+        int entry = PREFIX | toState(flag) << PREFIX_SHIFT;
+        if ((flag & PREFIX_SEGMENT_OVERRIDE) != 0)
+            entry |= SEGMENT_PREFIX | ((flag & SEGMENT_OVERRIDE_MASK) >> SEGMENT_OVERRIDE_SHIFT) << SEGMENT_SHIFT;
+        return entry;
+
+    }
+
+    static int bytes(int size) {
+        return size >= 0 && size <= 3 ? 1 << size : 0;
+    }
+
+    static int toState(long flags) {
+
+        int state = 0;
+        if ((flags & PREFIX_OPERAND) != 0) state |= STATE_OPERAND;
+        if ((flags & PREFIX_ADDRESS) != 0) state |= STATE_ADDRESS;
+        if ((flags & PREFIX_REX) != 0) state |= STATE_REX;
+        return state;
+
+    }
+
+    static long toFlags(int state) {
+
+        long flags = 0;
+        if ((state & STATE_OPERAND) != 0) flags |= PREFIX_OPERAND;
+        if ((state & STATE_ADDRESS) != 0) flags |= PREFIX_ADDRESS;
+        if ((state & STATE_REX) != 0) flags |= PREFIX_REX;
+        return flags;
+
+    }
+
+    private static DisassemblerException unsupported(int opcode, String reason) {
+        return new DisassemblerException(String.format("Can not build the length of opcode 0x%X: %s", opcode, reason));
+    }
+
+    /**
+     * Invalid instructions stop at the same byte where {@link X86Decoder} fails.
+     */
+    @Override
+    protected void measure() {
+
+        status = DecodeStatus.VALID;
+        branch = false;
+        measureInstruction();
+        read = consumed();
+
+    }
+
+    private void measureInstruction() {
+
+        boolean wide = bits >= Bits.BITS_64;
+        int[] table = wide ? TABLE_64 : TABLE_32;
+        int state = 0;
+        int segments = 0; // segment overrides are combined like the flags of the full decoder
+        int opcode = lastOpcode = readByte();
+        int entry = table[opcode];
+        prefixes = 0;
+
+        while ((entry & KIND_MASK) == PREFIX) {
+
+            if (consumed() >= MAX_INSTRUCTION_LENGTH) {
+                status = DecodeStatus.TOO_LONG;
+                return;
+            }
+
+            prefixes++;
+            state |= (entry >>> PREFIX_SHIFT) & STATE_MASK;
+            segments |= entry & SEGMENT_PREFIX | entry >>> SEGMENT_SHIFT;
+            opcode = lastOpcode = readByte();
+            entry = table[state << 8 | opcode];
+
+        }
+
+        boolean memory = (entry & MEMORY) != 0;
+
+        mnemonic = (wide ? MNEMONICS_64 : MNEMONICS_32)[state << 8 | opcode];
+
+        switch (entry & KIND_MASK) {
+
+            case NO_INSTRUCTION:
+                return;
+
+            case REGRM: {
+
+                int modrm = readByte();
+                int mod = modrm >>> 6;
+                int reg = (modrm >>> 3) & 0x07;
+                int rm = modrm & 0x07;
+                boolean segment = (entry & SEGMENT) != 0;
+                boolean direction = (entry & DIRECTION) != 0;
+
+                if (mnemonic == BY_REG)
+                    mnemonic = MNEMONIC_VARIANTS[opcode][reg];
+                memory = mod != 3;
+
+                if (segment && direction && reg >= Constants.SEGMENTS.length) {
+                    status = DecodeStatus.INVALID_SEGMENT;
+                    return;
+                }
+
+                if ((mod == 0 && rm == 5) || mod == 2) skip(4);
+                else if (mod == 1) skip(1);
+
+                if (segment && !direction && (mod == 0 && rm == 5 ? reg : rm) >= Constants.SEGMENTS.length) {
+                    status = DecodeStatus.INVALID_SEGMENT;
+                    return;
+                }
+
+                break;
+
+            }
+
+            case RM: {
+
+                int mod = readByte() >>> 6;
+                memory = mod != 3;
+
+                if (mod == 2) skip(4);
+                else if (mod == 1) skip(1);
+
+                break;
+
+            }
+
+        }
+
+        int fixed = (entry >>> FIXED_SHIFT) & 0xFF;
+        if ((entry & BRANCH) != 0) {
+            int size = opcode == 0x9a ? fixed - 2 : fixed; // ptr16:32, the selector follows the offset
+            target = 0;
+            for (int i = 0; i < size; i++)
+                target |= (long) readByte() << (i << 3);
+            skip(fixed - size);
+            branch = true;
+        } else
+            skip(fixed);
+
+        // the combined segment override is only looked up for memory operands
+        if ((segments & SEGMENT_PREFIX) != 0 && memory && (segments & ~SEGMENT_PREFIX) >= Constants.SEGMENTS.length)
+            status = DecodeStatus.INVALID_SEGMENT;
+
+    }
+
+}
@@ -0,0 +1,419 @@
+package un.darknet.disassembly.data;
+
+import un.darknet.disassembly.GenericOpcode;
+import un.darknet.disassembly.labels.Label;
+import un.darknet.disassembly.operand.Operand;
+import un.darknet.disassembly.operand.OperandObject;
+import un.darknet.disassembly.operand.OperandObjectPool;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Instruction list which stores instructions in growable primitive columns (structure of arrays)
+ * instead of one object graph per instruction.
+ * <p>
+ * Every instruction is a row of address, length, mnemonic id, type and an offset into the packed operand columns.
+ * Operands in turn point into packed object columns holding the object type and value, where registers and segment
+ * registers are stored as ids into a small name table and far pointer selectors as numbers.
+ * Mnemonics are stored as their {@link Mnemonic} id. {@link Instruction} objects are only materialized by
+ * {@link #get(int)}, scans should prefer the primitive accessors like {@link #getAddress(int)}.
+ * <p>
+ * Every row also stores the kind of its opcode. Invalid opcodes have no operands and come back as {@link InvalidOpcode}.
+ * Opcodes which did not materialize their operands yet ({@link Opcode#isMaterialized()}) are kept as they are
+ * in an object column created on the first of them, so adding them does not decode their operands.
+ * <p>
+ * Labels set on operand objects are kept in an object column created on the first label and written back through
+ * {@link #set(int, Instruction)}.
+ */
+public class ColumnarInstructionList extends AbstractList<Instruction> implements RandomAccess {
+
+    private static final InstructionType[] TYPES = InstructionType.values();
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long SELECTOR = 1L << 32; // marks a segment value which is a far pointer selector, not a name
+    private static final Operand[] NO_OPERANDS = new Operand[0];
+
+    // opcode kinds
+    private static final byte GENERIC = 0;  // operands are stored in the columns
+    private static final byte INVALID = 1;  // InvalidOpcode, no operands
+    private static final byte DEFERRED = 2; // the opcode is kept in the deferred column
+
+    private final OperandObjectPool pool;
+
+    // instruction columns
+    private int size;
+    private long[] addresses = new long[INITIAL_CAPACITY];
+    private byte[] lengths = new byte[INITIAL_CAPACITY];
+    private short[] mnemonics = new short[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY]; // -1 for no type
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private Opcode[] deferred; // created on the first deferred opcode
+    private int[] operandStart = new int[INITIAL_CAPACITY + 1]; // size + 1 entries
+
+    // operand columns
+    private int operandCount;
+    private int[] operandTypes = new int[INITIAL_CAPACITY * 2];
+    private int[] objectStart = new int[INITIAL_CAPACITY * 2 + 1]; // operandCount + 1 entries
+
+    // object columns
+    private int objectCount;
+    private byte[] objectTypes = new byte[INITIAL_CAPACITY * 2];
+    private long[] objectValues = new long[INITIAL_CAPACITY * 2];
+    private Label[] labels; // created on the first label
+
+    // names of registers and segment registers
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    public ColumnarInstructionList() {
+        this(OperandObject.pool);
+    }
+
+    /**
+     * @param pool the pool materialized operand objects are taken from
+     */
+    public ColumnarInstructionList(OperandObjectPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Instruction instruction) {
+
+        if (size == addresses.length)
+            growInstructions();
+
+        addresses[size] = instruction.location;
+        lengths[size] = length(instruction);
+        mnemonics[size] = mnemonicId(instruction);
+        types[size] = type(instruction);
+        kinds[size] = kind(instruction.opcode);
+
+        if (kinds[size] == DEFERRED)
+            defer(size, instruction.opcode);
+        else if (deferred != null)
+            deferred[size] = null;
+
+        Operand[] operands = kinds[size] == GENERIC ? instruction.getOperands() : NO_OPERANDS;
+        for (Operand operand : operands) {
+
+            if (operandCount == operandTypes.length)
+                growOperands();
+
+            operandTypes[operandCount] = (int) operand.types.get();
+
+            for (OperandObject object : operand.getObjects()) {
+
+                if (objectCount == objectTypes.length)
+                    growObjects();
+
+                objectTypes[objectCount] = (byte) object.type;
+                objectValues[objectCount] = encode(object);
+                if (object.label != null)
+                    label(objectCount, object.label);
+                objectCount++;
+
+            }
+
+            objectStart[++operandCount] = objectCount;
+
+        }
+
+        operandStart[++size] = operandCount;
+        modCount++;
+        return true;
+
+    }
+
+    @Override
+    public void add(int index, Instruction instruction) {
+        if (index != size)
+            throw new UnsupportedOperationException("Instructions can only be appended");
+        add(instruction);
+    }
+
+    @Override
+    public Instruction get(int index) {
+
+        checkIndex(index);
+
+        if (kinds[index] == DEFERRED)
+            return new Instruction(addresses[index], deferred[index], getType(index));
+        if (kinds[index] == INVALID)
+            return new Instruction(addresses[index], new InvalidOpcode(getLength(index)), getType(index));
+
+        int firstOperand = operandStart[index];
+        Operand[] operands = new Operand[operandStart[index + 1] - firstOperand];
+
+        for (int i = 0; i < operands.length; i++) {
+
+            int operand = firstOperand + i;
+            int firstObject = objectStart[operand];
+            OperandObject[] objects = new OperandObject[objectStart[operand + 1] - firstObject];
+
+            for (int j = 0; j < objects.length; j++)
+                objects[j] = decode(firstObject + j);
+
+            Operand op = new Operand(objects);
+            op.types.backing = operandTypes[operand];
+            operands[i] = op;
+
+        }
+
+        GenericOpcode opcode = new GenericOpcode(mnemonics[index], getLength(index), operands);
+        return new Instruction(addresses[index], opcode, getType(index));
+
+    }
+
+    /**
+     * Writes an instruction back, for example after labels were resolved on it.
+     * The instruction must have the same operand layout as the stored one, deferred opcodes are replaced as a whole.
+     */
+    @Override
+    public Instruction set(int index, Instruction instruction) {
+
+        Instruction previous = get(index);
+
+        if (kinds[index] == DEFERRED) {
+            setRow(index, instruction);
+            deferred[index] = instruction.opcode;
+            return previous;
+        }
+
+        if (kind(instruction.opcode) != kinds[index])
+            throw new IllegalArgumentException("Opcode kind of instruction " + index + " changed");
+
+        Operand[] operands = instruction.getOperands();
+        int firstOperand = operandStart[index];
+        if (operands.length != operandStart[index + 1] - firstOperand)
+            throw new IllegalArgumentException("Operand layout of instruction " + index + " changed");
+
+        for (int i = 0; i < operands.length; i++) {
+
+            int operand = firstOperand + i;
+            OperandObject[] objects = operands[i].getObjects();
+            if (objects.length != objectStart[operand + 1] - objectStart[operand])
+                throw new IllegalArgumentException("Operand layout of instruction " + index + " changed");
+
+            operandTypes[operand] = (int) operands[i].types.get();
+
+            for (int j = 0; j < objects.length; j++) {
+                int object = objectStart[operand] + j;
+                objectTypes[object] = (byte) objects[j].type;
+                objectValues[object] = encode(objects[j]);
+                if (labels != null || objects[j].label != null)
+                    label(object, objects[j].label);
+            }
+
+        }
+
+        setRow(index, instruction);
+        return previous;
+
+    }
+
+    private void setRow(int index, Instruction instruction) {
+        addresses[index] = instruction.location;
+        lengths[index] = length(instruction);
+        mnemonics[index] = mnemonicId(instruction);
+        types[index] = type(instruction);
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        operandCount = 0;
+        objectCount = 0;
+        labels = null;
+        deferred = null;
+        modCount++;
+    }
+
+    public long getAddress(int index) {
+        checkIndex(index);
+        return addresses[index];
+    }
+
+    public int getLength(int index) {
+        checkIndex(index);
+        return lengths[index] & 0xFF;
+    }
+
+    public String getMnemonic(int index) {
+        return Mnemonic.get(getMnemonicId(index)).getName();
+    }
+
+    /**
+     * @return the mnemonic id, see {@link Mnemonic}, stored ids are at most {@link Short#MAX_VALUE}
+     */
+    public int getMnemonicId(int index) {
+        checkIndex(index);
+        return mnemonics[index];
+    }
+
+    /**
+     * @return the type, null if the instruction had none
+     */
+    public InstructionType getType(int index) {
+        checkIndex(index);
+        return types[index] < 0 ? null : TYPES[types[index]];
+    }
+
+    public int getOperandCount(int index) {
+        checkIndex(index);
+        return operandStart[index + 1] - operandStart[index];
+    }
+
+    /**
+     * Shrinks all columns to their used size.
+     */
+    public void trimToSize() {
+        addresses = Arrays.copyOf(addresses, size);
+        lengths = Arrays.copyOf(lengths, size);
+        mnemonics = Arrays.copyOf(mnemonics, size);
+        types = Arrays.copyOf(types, size);
+        kinds = Arrays.copyOf(kinds, size);
+        if (deferred != null)
+            deferred = Arrays.copyOf(deferred, size);
+        operandStart = Arrays.copyOf(operandStart, size + 1);
+        operandTypes = Arrays.copyOf(operandTypes, operandCount);
+        objectStart = Arrays.copyOf(objectStart, operandCount + 1);
+        objectTypes = Arrays.copyOf(objectTypes, objectCount);
+        objectValues = Arrays.copyOf(objectValues, objectCount);
+        if (labels != null)
+            labels = Arrays.copyOf(labels, objectCount);
+    }
+
+    private static byte length(Instruction instruction) {
+
+        long length = instruction.getLength();
+        if (length < 0 || length > 0xFF)
+            throw new IllegalArgumentException("Instruction length out of range: " + length);
+
+        return (byte) length;
+
+    }
+
+    private static byte type(Instruction instruction) {
+        return instruction.type == null ? -1 : (byte) instruction.type.ordinal();
+    }
+
+    private static byte kind(Opcode opcode) {
+
+        if (opcode instanceof InvalidOpcode)
+            return INVALID;
+        if (!opcode.isMaterialized())
+            return DEFERRED;
+
+        return GENERIC;
+
+    }
+
+    private void defer(int index, Opcode opcode) {
+        if (deferred == null)
+            deferred = new Opcode[addresses.length];
+        deferred[index] = opcode;
+    }
+
+    private static short mnemonicId(Instruction instruction) {
+
+        int id = instruction.getMnemonicId();
+        if (id < 0 || id > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Mnemonic id out of range: " + id);
+
+        return (short) id;
+
+    }
+
+    private long encode(OperandObject object) {
+
+        if (object.type == Operand.TYPE_SEGMENT && object.value instanceof Long)
+            return SELECTOR | (Long) object.value; // distinct per selector
+        if (object.value instanceof Long)
+            return (Long) object.value;
+        if (object.value instanceof String)
+            return nameId((String) object.value);
+
+        throw new IllegalArgumentException("Unsupported operand object value: " + object.value);
+
+    }
+
+    private OperandObject decode(int object) {
+
+        int type = objectTypes[object];
+        long value = objectValues[object];
+
+        OperandObject obj;
+        if (type == Operand.TYPE_CONSTANT)
+            obj = pool.immediate(value);
+        else if (type == Operand.TYPE_SEGMENT && (value & SELECTOR) != 0)
+            obj = pool.selector((int) value);
+        else if (type == Operand.TYPE_SEGMENT)
+            obj = pool.segment(names.get((int) value));
+        else
+            obj = pool.register(names.get((int) value));
+
+        Label label = labels != null ? labels[object] : null;
+        return label != null ? obj.withLabel(label) : obj;
+
+    }
+
+    private int nameId(String name) {
+
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+
+    }
+
+    private void label(int object, Label label) {
+        if (labels == null)
+            labels = new Label[objectTypes.length];
+        labels[object] = label;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    private void growInstructions() {
+        int capacity = Math.max(addresses.length + (addresses.length >> 1), INITIAL_CAPACITY);
+        addresses = Arrays.copyOf(addresses, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        mnemonics = Arrays.copyOf(mnemonics, capacity);
+        types = Arrays.copyOf(types, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+        if (deferred != null)
+            deferred = Arrays.copyOf(deferred, capacity);
+        operandStart = Arrays.copyOf(operandStart, capacity + 1);
+    }
+
+    private void growOperands() {
+        int capacity = Math.max(operandTypes.length + (operandTypes.length >> 1), INITIAL_CAPACITY);
+        operandTypes = Arrays.copyOf(operandTypes, capacity);
+        objectStart = Arrays.copyOf(objectStart, capacity + 1);
+    }
+
+    private void growObjects() {
+        int capacity = Math.max(objectTypes.length + (objectTypes.length >> 1), INITIAL_CAPACITY);
+        objectTypes = Arrays.copyOf(objectTypes, capacity);
+        objectValues = Arrays.copyOf(objectValues, capacity);
+        if (labels != null)
+            labels = Arrays.copyOf(labels, capacity);
+    }
+
+}
@@ -22,10 +22,38 @@ public class Instruction {
         return opcode.mnemonic();
     }
 
+    /**
+     * @return the mnemonic id, see {@link Mnemonic}
+     */
+    public int getMnemonicId() {
+        return opcode.mnemonicId();
+    }
+
     public long getLength() {
         return opcode.size();
     }
 
+    /**
+     * Computes the address a constant operand of a branch or call points at.
+     * Relative displacements are stored as read, unsigned, and are sign extended by their encoded size:
+     * the displacement is the last part of the instruction, which is 1 byte up to a length of 2 (rel8),
+     * 2 bytes up to a length of 4 (rel16) and 4 bytes otherwise (rel32).
+     *
+     * @param value the constant
+     * @return the target address
+     */
+    public long getTarget(long value) {
+
+        if (type != InstructionType.JUMP_RELATIVE)
+            return value;
+
+        long length = getLength();
+        long displacement = length <= 2 ? (byte) value : length <= 4 ? (short) value : (int) value;
+
+        return location + length + displacement;
+
+    }
+
     @Override
     public String toString() {
         return opcode.toString();
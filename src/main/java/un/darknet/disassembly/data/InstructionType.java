@@ -6,6 +6,7 @@ public enum InstructionType {
     JUMP_RELATIVE,
     LOGIC,
     CALL,
+    RETURN,
     OTHER;
 
     public static InstructionType get(String mnemonic) {
@@ -18,6 +19,8 @@ public enum InstructionType {
                 return InstructionType.JUMP;
             case "CALL":
                 return InstructionType.CALL;
+            case "RET":
+                return InstructionType.RETURN;
             case "AND": case "OR": case "XOR": case "NOT": case "TEST": case "SHL": case "SHR": case "SAR": case "ROL": case "ROR":
                 return InstructionType.LOGIC;
             default:
@@ -2,20 +2,44 @@ package un.darknet.disassembly.data;
 
 import un.darknet.disassembly.operand.Operand;
 
+/**
+ * Opcode of bytes which could not be decoded, they are skipped as a whole.
+ */
 public class InvalidOpcode implements Opcode{
+
+    private static final Operand[] NO_OPERANDS = new Operand[0];
+
+    private final long size;
+
+    public InvalidOpcode() {
+        this(0);
+    }
+
+    /**
+     * @param size the number of bytes skipped
+     */
+    public InvalidOpcode(long size) {
+        this.size = size;
+    }
+
     @Override
     public String mnemonic() {
         return "???";
     }
 
+    @Override
+    public int mnemonicId() {
+        return Mnemonic.INVALID.getId();
+    }
+
     @Override
     public Operand[] operands() {
-        return new Operand[0];
+        return NO_OPERANDS;
     }
 
     @Override
     public long size() {
-        return 0;
+        return size;
     }
 
     @Override
@@ -0,0 +1,123 @@
+package un.darknet.disassembly.data;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry entry for a mnemonic.
+ * Every distinct mnemonic gets a small int id once, together with its precomputed lower case name and
+ * {@link InstructionType}, so decoding and analysis can work with ids and only touch strings when rendering.
+ * The registry is safe to use from multiple threads.
+ */
+public final class Mnemonic {
+
+    /**
+     * Id used while a mnemonic is not known yet.
+     */
+    public static final int NONE = -1;
+
+    private static final Object lock = new Object();
+    private static final Map<String, Mnemonic> byName = new ConcurrentHashMap<>();
+    private static volatile Mnemonic[] byId = new Mnemonic[0];
+
+    public static final Mnemonic INVALID = of("???");
+    public static final Mnemonic UNKNOWN = of("UNKNOWN"); // opcodes the decoder has no table entry for
+
+    private final int id;
+    private final String name;
+    private final String lowerName;
+    private final InstructionType type;
+
+    private Mnemonic(int id, String name) {
+        this.id = id;
+        this.name = name;
+        this.lowerName = name.toLowerCase();
+        this.type = InstructionType.get(name);
+    }
+
+    /**
+     * Returns the registry entry for a mnemonic, registering it if it is new.
+     * Registered mnemonics are never removed, so this is meant for the decoder tables,
+     * lookups of arbitrary names should use {@link #find(String)}.
+     *
+     * @param name the mnemonic as decoded (upper case)
+     * @return the registry entry
+     */
+    public static Mnemonic of(String name) {
+
+        Mnemonic mnemonic = byName.get(name);
+        if (mnemonic != null)
+            return mnemonic;
+
+        synchronized (lock) {
+
+            mnemonic = byName.get(name);
+            if (mnemonic == null) {
+                Mnemonic[] ids = byId;
+                mnemonic = new Mnemonic(ids.length, name);
+                ids = Arrays.copyOf(ids, ids.length + 1);
+                ids[mnemonic.id] = mnemonic;
+                byId = ids;
+                byName.put(name, mnemonic);
+            }
+
+            return mnemonic;
+
+        }
+
+    }
+
+    /**
+     * Looks up a mnemonic without registering it.
+     *
+     * @param name the mnemonic as decoded (upper case)
+     * @return the registry entry, null if the mnemonic is not registered
+     */
+    public static Mnemonic find(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @param id a registered mnemonic id
+     * @return the registry entry
+     */
+    public static Mnemonic get(int id) {
+        return byId[id];
+    }
+
+    /**
+     * @return the number of registered mnemonics
+     */
+    public static int count() {
+        return byId.length;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the mnemonic as decoded (upper case)
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the lower case mnemonic
+     */
+    public String getLowerName() {
+        return lowerName;
+    }
+
+    public InstructionType getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -9,11 +9,34 @@ public interface Opcode {
      */
     String mnemonic();
 
+    /**
+     * Looks the mnemonic up on every call without registering it, implementations should return a stored id.
+     *
+     * @return The opcode mnemonic id, see {@link Mnemonic}, {@link Mnemonic#UNKNOWN} if it is not registered.
+     */
+    default int mnemonicId() {
+
+        String name = mnemonic();
+        Mnemonic mnemonic = Mnemonic.find(name);
+        if (mnemonic == null)
+            mnemonic = Mnemonic.find(name.toUpperCase());
+
+        return mnemonic != null ? mnemonic.getId() : Mnemonic.UNKNOWN.getId();
+
+    }
+
     /**
      * @return The opcode operands.
      */
     Operand[] operands();
 
+    /**
+     * @return false if the operands are only decoded on the first call to {@link #operands()}
+     */
+    default boolean isMaterialized() {
+        return true;
+    }
+
 
     /**
      * @return The opcode size in bytes.
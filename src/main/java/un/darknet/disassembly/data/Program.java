@@ -1,7 +1,10 @@
 package un.darknet.disassembly.data;
 
+import un.darknet.disassembly.DisassemblyOptions;
+import un.darknet.disassembly.input.ArrayByteSource;
+import un.darknet.disassembly.input.ByteSource;
 import un.darknet.disassembly.labels.Label;
-import un.darknet.disassembly.operand.OperandObject;
+import un.darknet.disassembly.labels.LabelTable;
 
 import java.util.*;
 
@@ -13,9 +16,10 @@ public class Program {
     public String source;
     // TODO: add debug info and elf / pe labels maybe a ProgramResolver?
     public byte[] code;
+    ByteSource input; // used instead of code when set, e.g. for memory mapped files
     public List<Instruction> instructions = new ArrayList<>();
-    Map<Object, OperandObject> operandObjectPool;
-    Map<Long, Label> labels = new HashMap<>();
+    LabelTable labels = new LabelTable();
+    DisassemblyOptions options = new DisassemblyOptions();
 
     public Program() {
     }
@@ -31,6 +35,31 @@ public class Program {
         return p;
     }
 
+    /**
+     * Creates a program which reads its code from a source, for example a memory mapped file.
+     *
+     * @param input the code to disassemble
+     * @return the program
+     */
+    public static Program withInput(ByteSource input) {
+        Program p = new Program();
+        p.input = input;
+        return p;
+    }
+
+    /**
+     * Creates a program which stores its instructions in primitive columns,
+     * see {@link ColumnarInstructionList}.
+     *
+     * @param code the code to disassemble
+     * @return the program
+     */
+    public static Program withColumnarCode(byte[] code) {
+        Program p = withCode(code);
+        p.instructions = new ColumnarInstructionList(p.options.getOperandPool());
+        return p;
+    }
+
     public static Program withInstructions(Instruction... instructions) {
         Program p = new Program();
         p.instructions = Arrays.asList(instructions);
@@ -42,17 +71,31 @@ public class Program {
     }
 
     public void addLabel(Label label) {
-        labels.put(label.address, label);
+        labels.put(label);
     }
 
     public List<Instruction> getInstructions() {
         return instructions;
     }
 
-    public Map<Long, Label> getLabels() {
+    /**
+     * @return the labels by address, branch and call targets are added while the program is decoded
+     */
+    public LabelTable getLabels() {
         return labels;
     }
 
+    /**
+     * @return the settings of the session this program belongs to
+     */
+    public DisassemblyOptions getOptions() {
+        return options;
+    }
+
+    public void setOptions(DisassemblyOptions options) {
+        this.options = options;
+    }
+
     public String getSource() {
         return source;
     }
@@ -61,4 +104,13 @@ public class Program {
         return code;
     }
 
+    /**
+     * @return the code as a source, wrapping {@link #code} if no source was given
+     */
+    public ByteSource getInput() {
+        if (input == null && code != null)
+            input = new ArrayByteSource(code);
+        return input;
+    }
+
 }
@@ -0,0 +1,23 @@
+package un.darknet.disassembly.decoding;
+
+/**
+ * How much of an instruction is built while decoding.
+ */
+public enum DecodeMode {
+
+    /**
+     * Every instruction is decoded with all of its operands.
+     */
+    FULL,
+
+    /**
+     * Mnemonic, type and length are decoded, the operands are decoded the first time they are accessed.
+     */
+    LAZY_OPERANDS,
+
+    /**
+     * Only mnemonic, type and length are decoded, instructions have no operands.
+     */
+    MNEMONIC_ONLY
+
+}
@@ -0,0 +1,33 @@
+package un.darknet.disassembly.decoding;
+
+/**
+ * Outcome of decoding a single instruction, see {@link DecoderContext#getStatus()}.
+ */
+public enum DecodeStatus {
+
+    /**
+     * The instruction was decoded.
+     */
+    VALID,
+
+    /**
+     * The bytes do not encode an instruction.
+     */
+    INVALID,
+
+    /**
+     * The instruction refers to a segment register which does not exist.
+     */
+    INVALID_SEGMENT,
+
+    /**
+     * The instruction is longer than the maximum instruction length.
+     */
+    TOO_LONG,
+
+    /**
+     * The instruction continues past the end of the input.
+     */
+    TRUNCATED
+
+}
@@ -1,21 +1,65 @@
 package un.darknet.disassembly.decoding;
 
-import me.martinez.pe.io.CadesBufferStream;
-import me.martinez.pe.io.CadesStreamReader;
-import me.martinez.pe.io.LittleEndianReader;
 import un.darknet.disassembly.Disassembler;
-import un.darknet.disassembly.GenericOpcode;
 import un.darknet.disassembly.PlatformDisassembler;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.InvalidOpcode;
+import un.darknet.disassembly.exception.InvalidEncodingException;
 import un.darknet.disassembly.exception.InvalidInstructionException;
+import un.darknet.disassembly.input.ArrayByteSource;
+import un.darknet.disassembly.input.ByteSource;
+import un.darknet.disassembly.operand.Operand;
+import un.darknet.disassembly.operand.OperandObject;
+import un.darknet.disassembly.operand.OperandObjectPool;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 
+/**
+ * Decodes instructions from a single input.
+ * A decoder is not thread-safe, but it keeps all per-instruction state in its {@link DecoderContext},
+ * so multiple decoders can run in parallel on the same {@link PlatformDisassembler}.
+ */
 public abstract class Decoder {
 
+    /**
+     * Upper bound of bytes a decoder may read for a single instruction, including prefixes.
+     * Every instruction is decoded from a window which has at least this many readable bytes,
+     * so reads inside an instruction need no bounds checks of their own.
+     */
+    public static final int WINDOW = 32;
+    static final int BLOCK_SIZE = 1 << 16; // bytes copied at once from sources without a backing array
+
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
     public PlatformDisassembler platform;
-    protected LittleEndianReader reader;
-    protected CadesStreamReader stream; // pointer to reader.getStream();
-    protected int length;
+    protected byte bits; // snapshot of the platform bit size taken in feed
+    protected OperandObjectPool pool = OperandObject.pool;
+    protected Diagnostics diagnostics = Diagnostics.NONE; // set from the session options
+    protected ByteSource source;
+    protected long offset;   // offset of position 0 in the source
+    protected long position; // start of the current instruction relative to offset
+    protected long length;
+
+    // cursor over the current instruction
+    private byte[] window;
+    private int windowStart;
+    private int cursor;
+
+    // copy of the source for sources without a backing array and for the tail of the input,
+    // zero filled past the copied bytes so reads never leave the array
+    private byte[] block;
+    private long blockStart;
+    private int blockLength;
+    protected boolean reuseContext;
+    private final DecoderContext context = new DecoderContext();
 
     public Decoder(PlatformDisassembler platform) {
         this.platform = platform;
@@ -26,35 +70,343 @@ public abstract class Decoder {
      */
     public void feed(byte[] data, int offset, int length) {
 
-        stream = new CadesBufferStream(data, offset, length);
-        reader = new LittleEndianReader(stream);
+        feed(new ArrayByteSource(data), offset, length);
+
+    }
+
+    /**
+     * Initialize the decoder with a source which may be larger than 2 GB.
+     * Instruction addresses are relative to the offset.
+     *
+     * @param source the input
+     * @param offset the offset to start decoding at
+     * @param length how many bytes to decode
+     */
+    public void feed(ByteSource source, long offset, long length) {
+
+        if (offset < 0 || length < 0 || offset + length > source.length())
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length) + ") out of bounds for length " + source.length());
+
+        bits = platform.getBits();
+        this.source = source;
+        this.offset = offset;
+        this.position = 0;
         this.length = length;
+        this.window = null;
+        this.windowStart = this.cursor = 0;
+        this.blockLength = 0;
+
+    }
+
+    /**
+     * @return the read position relative to the fed offset
+     */
+    public long getPosition() {
+        return position + (cursor - windowStart);
+    }
+
+    /**
+     * Overrides the bit size which was taken from the platform in {@link #feed(ByteSource, long, long)}.
+     *
+     * @param bits the bit size
+     */
+    public void setBits(byte bits) {
+        this.bits = bits;
+    }
+
+    public byte getBits() {
+        return bits;
+    }
+
+    /**
+     * Moves the decoder to a position, the next instruction is decoded from there.
+     *
+     * @param position the position relative to the fed offset
+     */
+    public void seek(long position) {
+
+        if (position < 0 || position > length)
+            throw new IndexOutOfBoundsException("Position " + position + " out of bounds for length " + length);
+
+        this.position = position;
+        this.window = null;
+        this.windowStart = this.cursor = 0;
+
+    }
+
+    /**
+     * @return the number of bytes read for the current instruction
+     */
+    protected int consumed() {
+        return cursor - windowStart;
+    }
+
+    /**
+     * Points the cursor at the current position.
+     * This is the only bounds check per instruction: either the backing array has a full window left,
+     * or the remaining bytes are taken from the zero padded block.
+     */
+    private void openWindow() {
+
+        long remaining = length - position;
+        byte[] array = source.array();
+
+        if (array != null && remaining >= WINDOW) {
+            window = array;
+            windowStart = cursor = source.arrayOffset() + (int) (offset + position);
+            return;
+        }
+
+        long relative = position - blockStart;
+
+        if (block == null || relative < 0 || relative + Math.min(remaining, WINDOW) > blockLength) {
+
+            if (block == null) // arrays only need the block for their tail
+                block = new byte[(array != null ? WINDOW : BLOCK_SIZE) + WINDOW];
+
+            blockStart = position;
+            blockLength = source.get(offset + position, block, 0, (int) Math.min(block.length - WINDOW, remaining));
+            Arrays.fill(block, blockLength, block.length, (byte) 0);
+            relative = 0;
+
+        }
+
+        window = block;
+        windowStart = cursor = (int) relative;
+
+    }
+
+    protected int readByte() {
+        return window[cursor++] & 0xFF;
+    }
+
+    protected int readWord() {
+        int value = (short) SHORT.get(window, cursor) & 0xFFFF;
+        cursor += 2;
+        return value;
+    }
+
+    protected long readDword() {
+        long value = (int) INT.get(window, cursor) & 0xFFFFFFFFL;
+        cursor += 4;
+        return value;
+    }
+
+    protected long readQword() {
+        long value = (long) LONG.get(window, cursor);
+        cursor += 8;
+        return value;
+    }
+
+    protected void skip(int count) {
+        cursor += count;
+    }
+
+    public OperandObjectPool getOperandPool() {
+        return pool;
+    }
+
+    /**
+     * @param pool the pool operand objects are interned in
+     */
+    public void setOperandPool(OperandObjectPool pool) {
+        this.pool = pool;
+    }
+
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
 
+    /**
+     * @param diagnostics counts the invalid and unhandled instructions of this decoder
+     */
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * When enabled, {@link #next()} resets and returns the same {@link DecoderContext} for every instruction
+     * instead of allocating a new one. The returned context is then only valid until the next call.
+     *
+     * @param reuseContext whether to reuse a single context
+     */
+    public void setReuseContext(boolean reuseContext) {
+        this.reuseContext = reuseContext;
+    }
+
+    public boolean isReuseContext() {
+        return reuseContext;
     }
 
     /**
      * Advance the reader to the next instruction.
+     *
+     * @throws InvalidInstructionException if the bytes are not a valid instruction, use {@link #decodeNext()}
+     *                                     to get them as an invalid instruction instead
      */
     public DecoderContext next() throws IOException, InvalidInstructionException {
 
-        long pos = stream.getPos(); // save start position for size calculation
-        int opcode = reader.readByte();
+        DecoderContext ctx = decodeNext();
+
+        if (!ctx.isValid())
+            throw new InvalidInstructionException(ctx.address, ctx.instruction.opcode, ctx.status);
+
+        return ctx;
+    }
+
+    /**
+     * Advance the reader to the next instruction.
+     * Bytes which are not a valid instruction are skipped as an instruction with an {@link InvalidOpcode},
+     * located at the start of the bytes, the context tells why with its {@link DecoderContext#getStatus() status}.
+     *
+     * @return the context of the instruction
+     * @throws EOFException if there is no input left
+     */
+    public DecoderContext decodeNext() throws EOFException {
+
+        if (position >= length)
+            throw new EOFException();
+
+        long pos = position; // save start position for size calculation
+        long remaining = length - pos;
+        openWindow();
+        int opcode = readByte();
 
-        DecoderContext ctx = new DecoderContext();
+        DecoderContext ctx = reuseContext ? context.reset() : new DecoderContext();
         ctx.opcode = opcode;
         ctx.address = pos;
 
         try {
             decode(ctx); // send it off to child to decode
+        } catch (InvalidEncodingException e) {
+            ctx.status = e.getStatus();
         } catch (IOException e) {
-            throw new InvalidInstructionException(pos, new GenericOpcode("???", stream.getPos() - pos), e);
+            ctx.status = DecodeStatus.INVALID;
+        }
+
+        int size = consumed();
+        position += Math.min(size, remaining);
+        windowStart = cursor;
+
+        if (size > remaining) { // read into the zero padding, the instruction is truncated
+            ctx.status = DecodeStatus.TRUNCATED;
+            size = (int) remaining;
+        }
+
+        if (ctx.status != DecodeStatus.VALID) {
+            diagnostics.report(Diagnostics.Reason.of(ctx.status), ctx.opcode, pos);
+            ctx.address = pos;
+            ctx.instruction = new Instruction(pos, new InvalidOpcode(size), InstructionType.OTHER);
         }
 
         return ctx;
     }
 
+    /**
+     * Decodes the next instruction.
+     * Invalid instructions are returned with an {@link InvalidOpcode} instead of being thrown.
+     *
+     * @return the instruction, or null if the input decoded to no instruction (e.g. an unhandled prefix)
+     * @throws IOException if there is no input left
+     */
+    public Instruction nextInstruction() throws IOException {
+        return decodeNext().getInstruction();
+    }
+
+    /**
+     * Skips the next instruction without building it.
+     *
+     * @return how far the position advanced, the same as for {@link #next()}
+     * @throws IOException if there is no input left
+     */
+    public int nextLength() throws IOException {
+
+        if (position >= length)
+            throw new EOFException();
+
+        long remaining = length - position;
+        openWindow();
+
+        try {
+            measure();
+        } catch (IOException ignored) {
+            // invalid instructions are as long as what was read before the error
+        }
+
+        int size = (int) Math.min(consumed(), remaining);
+        position += size;
+        windowStart = cursor;
+
+        return size;
+
+    }
+
+    /**
+     * Fills an array with the positions the next instructions start at, see {@link #nextLength()}.
+     *
+     * @param boundaries the array to fill
+     * @param offset     the first index to fill
+     * @param count      the maximum number of positions
+     * @return the number of positions filled, less than count at the end of the input
+     * @throws ArithmeticException if a position does not fit into an int
+     */
+    public int nextBoundaries(int[] boundaries, int offset, int count) throws IOException {
+
+        int filled = 0;
+        while (filled < count && position < length) {
+            boundaries[offset + filled++] = Math.toIntExact(position);
+            nextLength();
+        }
+
+        return filled;
+
+    }
+
+    /**
+     * Collects the targets of a jump, branch or call like label resolution computes them
+     * ({@link Instruction#getTarget(long)}, memory operands are skipped).
+     * The default reads the operands, decoders which build instructions without them should override this.
+     *
+     * @param instruction the instruction {@link #nextInstruction()} returned last
+     * @param targets     receives the targets
+     * @return the number of targets written, at most the length of targets
+     */
+    public int branchTargets(Instruction instruction, long[] targets) {
+
+        int count = 0;
+        for (Operand operand : instruction.getOperands()) {
+
+            if (operand.types.has(Operand.TYPE_MEMORY))
+                continue; // the constant is where the target is stored
+
+            for (OperandObject object : operand.getObjects()) {
+                if (object.type == Operand.TYPE_CONSTANT && count < targets.length)
+                    targets[count++] = instruction.getTarget((long) object.value);
+            }
+
+        }
+
+        return count;
+
+    }
+
+    /**
+     * Reads the instruction at the cursor, leaving the cursor behind its last byte.
+     * The default decodes the instruction fully, decoders should override this with a cheaper version.
+     *
+     * @throws IOException if the instruction is invalid, the bytes read so far count as its length
+     */
+    protected void measure() throws IOException {
+
+        DecoderContext ctx = reuseContext ? context.reset() : new DecoderContext();
+        ctx.address = position;
+        ctx.opcode = readByte();
+        decode(ctx);
+
+    }
+
     public boolean hasNext() {
-        return stream.getPos() < length;
+        return position < length;
     }
 
     /**
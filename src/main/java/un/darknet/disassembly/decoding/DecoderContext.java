@@ -1,28 +1,49 @@
 package un.darknet.disassembly.decoding;
 
 import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.Mnemonic;
+import un.darknet.disassembly.operand.Operand;
 import un.darknet.disassembly.util.Flags;
 
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * State of a single instruction decode.
+ * A context can be {@link #reset() reset} and reused for the next instruction,
+ * so that a decoder does not have to allocate one per instruction.
+ */
 public class DecoderContext {
 
+    public static final int NO_OVERRIDE = -1;
+
     int opcode;
     long address;
+    int mnemonic = Mnemonic.NONE; // mnemonic id, may be picked while decoding (e.g. by the reg field)
 
     Flags flags = new Flags();
-    Stack<Object> stack = new Stack<>();
+    long prefixes; // the flags once all prefixes were read
     Instruction instruction;
-    Object override; // used for any type of override
-
-    @SuppressWarnings("unchecked")
-    public <T> T pop() {
-        return (T) stack.pop();
-    }
-
-    @SuppressWarnings("unchecked")
-    public <T> T push(T t) {
-        return (T) stack.push(t);
+    int override = NO_OVERRIDE; // used for any type of override
+    DecodeStatus status = DecodeStatus.VALID;
+    final List<Operand> operandBuffer = new ArrayList<>(4);
+
+    /**
+     * Clears all state so the context can be used for the next instruction.
+     *
+     * @return this context
+     */
+    public DecoderContext reset() {
+        opcode = 0;
+        address = 0;
+        mnemonic = Mnemonic.NONE;
+        flags.clear();
+        prefixes = 0;
+        instruction = null;
+        override = NO_OVERRIDE;
+        status = DecodeStatus.VALID;
+        operandBuffer.clear();
+        return this;
     }
 
     public int getOpcode() {
@@ -41,12 +62,15 @@ public class DecoderContext {
         this.address = address;
     }
 
-    public Stack<Object> getStack() {
-        return stack;
+    /**
+     * @return the id of the mnemonic, see {@link Mnemonic}
+     */
+    public int getMnemonic() {
+        return mnemonic;
     }
 
-    public void setStack(Stack<Object> stack) {
-        this.stack = stack;
+    public void setMnemonic(int mnemonic) {
+        this.mnemonic = mnemonic;
     }
 
     public Instruction getInstruction() {
@@ -57,6 +81,18 @@ public class DecoderContext {
         this.instruction = instruction;
     }
 
+    /**
+     * @return whether the instruction was decoded, otherwise the instruction is an {@link un.darknet.disassembly.data.InvalidOpcode}
+     * covering the bytes which were skipped
+     */
+    public DecodeStatus getStatus() {
+        return status;
+    }
+
+    public boolean isValid() {
+        return status == DecodeStatus.VALID;
+    }
+
     public Flags getFlags() {
         return flags;
     }
@@ -65,12 +101,34 @@ public class DecoderContext {
         this.flags = flags;
     }
 
-    public Object getOverride() {
+    /**
+     * @return the flags set by the prefixes of the instruction, without the ones its operation string sets
+     */
+    public long getPrefixes() {
+        return prefixes;
+    }
+
+    public void setPrefixes(long prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    public boolean hasOverride() {
+        return override != NO_OVERRIDE;
+    }
+
+    public int getOverride() {
         return override;
     }
 
-    public void setOverride(Object override) {
+    public void setOverride(int override) {
         this.override = override;
     }
 
+    /**
+     * @return scratch list the decoder collects operands into, cleared on {@link #reset()}
+     */
+    public List<Operand> getOperandBuffer() {
+        return operandBuffer;
+    }
+
 }
@@ -0,0 +1,230 @@
+package un.darknet.disassembly.decoding;
+
+import un.darknet.disassembly.Disassembler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the problems decoders run into, by reason and opcode.
+ * <p>
+ * Decoders report every invalid or unhandled instruction here instead of logging it, so malformed input
+ * does not slow down decoding. Reports are only logged if a log rate is set, and then at most that many per second.
+ * {@link #summary()} lists the counts at the end of a run.
+ * The counters are atomic, a single instance is shared by all decoders of a session,
+ * every {@link un.darknet.disassembly.DisassemblyOptions} has its own. They are allocated on the first report,
+ * so sessions which decode only valid instructions never pay for them.
+ * A parallel sweep only counts the problems of the instructions it keeps, like a sequential sweep.
+ */
+public class Diagnostics {
+
+    /**
+     * Opcodes are counted modulo this.
+     */
+    public static final int OPCODES = 512;
+
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * Ignores all reports, for decoders whose problems were already counted elsewhere.
+     */
+    public static final Diagnostics NONE = new Diagnostics(false) {
+        @Override
+        public void report(Reason reason, int opcode, long address) {
+        }
+    };
+
+    private final boolean counting;
+    private volatile AtomicLongArray counts; // created on the first report
+    private volatile int logRate;
+
+    // log window, guarded by this
+    private long windowStart = System.nanoTime();
+    private int logged;
+    private long suppressed;
+
+    public Diagnostics() {
+        this(true);
+    }
+
+    /**
+     * @param counting false for subclasses which override {@link #report(Reason, int, long)} and keep no counts
+     */
+    Diagnostics(boolean counting) {
+        this.counting = counting;
+    }
+
+    /**
+     * Counts a problem and logs it if the log rate allows it.
+     *
+     * @param reason  what went wrong
+     * @param opcode  the opcode being decoded
+     * @param address where the instruction starts
+     */
+    public void report(Reason reason, int opcode, long address) {
+
+        if (counting)
+            counts().incrementAndGet(reason.ordinal() * OPCODES + (opcode & (OPCODES - 1)));
+
+        if (logRate > 0 && permit())
+            Disassembler.logger.warn("{} at 0x{}, opcode 0x{}", reason, Long.toHexString(address), Integer.toHexString(opcode));
+
+    }
+
+    private AtomicLongArray counts() {
+
+        AtomicLongArray counts = this.counts;
+        if (counts == null) {
+            synchronized (this) {
+                counts = this.counts;
+                if (counts == null)
+                    this.counts = counts = new AtomicLongArray(Reason.values().length * OPCODES);
+            }
+        }
+        return counts;
+
+    }
+
+    private synchronized boolean permit() {
+
+        long now = System.nanoTime();
+
+        if (now - windowStart >= WINDOW) {
+
+            if (suppressed > 0)
+                Disassembler.logger.warn("{} decoder diagnostics were not logged", suppressed);
+
+            windowStart = now;
+            logged = 0;
+            suppressed = 0;
+
+        }
+
+        if (logged < logRate) {
+            logged++;
+            return true;
+        }
+
+        suppressed++;
+        return false;
+
+    }
+
+    public long count(Reason reason, int opcode) {
+        AtomicLongArray counts = this.counts;
+        return counts == null ? 0 : counts.get(reason.ordinal() * OPCODES + (opcode & (OPCODES - 1)));
+    }
+
+    public long count(Reason reason) {
+
+        long count = 0;
+        for (int opcode = 0; opcode < OPCODES; opcode++)
+            count += count(reason, opcode);
+
+        return count;
+
+    }
+
+    public long total() {
+
+        AtomicLongArray counts = this.counts;
+        if (counts == null)
+            return 0;
+
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++)
+            total += counts.get(i);
+
+        return total;
+
+    }
+
+    public void reset() {
+
+        AtomicLongArray counts = this.counts;
+        if (counts == null)
+            return;
+
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+
+    }
+
+    /**
+     * @return the non zero counts, one line per reason and opcode, most frequent first
+     */
+    public String summary() {
+
+        List<long[]> entries = new ArrayList<>(); // reason, opcode, count
+        for (Reason reason : Reason.values())
+            for (int opcode = 0; opcode < OPCODES; opcode++) {
+                long count = count(reason, opcode);
+                if (count > 0)
+                    entries.add(new long[] {reason.ordinal(), opcode, count});
+            }
+
+        entries.sort((a, b) -> Long.compare(b[2], a[2]));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Decoder diagnostics: ").append(total()).append('\n');
+        for (long[] entry : entries)
+            sb.append(String.format("%-20s 0x%02X %10d%n", Reason.values()[(int) entry[0]], entry[1], entry[2]));
+
+        return sb.toString();
+
+    }
+
+    /**
+     * @return how many reports are logged per second, 0 if none
+     */
+    public int getLogRate() {
+        return logRate;
+    }
+
+    public void setLogRate(int logRate) {
+        this.logRate = logRate;
+    }
+
+    /**
+     * Why an instruction could not be decoded.
+     */
+    public enum Reason {
+
+        INVALID,
+        INVALID_SEGMENT,
+        TOO_LONG,
+        TRUNCATED,
+
+        /**
+         * The operation string of the opcode contains an operation the decoder does not know.
+         */
+        UNHANDLED_OPERATION,
+
+        /**
+         * A prefix the decoder has no flag for, it decodes to no instruction.
+         */
+        UNHANDLED_PREFIX;
+
+        /**
+         * @param status the status of an invalid instruction
+         * @return the matching reason
+         */
+        public static Reason of(DecodeStatus status) {
+
+            switch (status) {
+                case INVALID_SEGMENT:
+                    return INVALID_SEGMENT;
+                case TOO_LONG:
+                    return TOO_LONG;
+                case TRUNCATED:
+                    return TRUNCATED;
+                default:
+                    return INVALID;
+            }
+
+        }
+
+    }
+
+}
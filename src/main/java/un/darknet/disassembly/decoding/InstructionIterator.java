@@ -0,0 +1,53 @@
+package un.darknet.disassembly.decoding;
+
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.exception.DisassemblerException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls instructions from a fed {@link Decoder} one at a time.
+ * Invalid instructions are returned as instructions with their partial opcode,
+ * inputs which decode to no instruction at all (e.g. unhandled prefixes) are skipped.
+ */
+public class InstructionIterator implements Iterator<Instruction> {
+
+    private final Decoder decoder;
+    private Instruction next; // decoded ahead by hasNext
+
+    public InstructionIterator(Decoder decoder) {
+        this.decoder = decoder;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        while (next == null && decoder.hasNext()) {
+
+            try {
+                next = decoder.nextInstruction(); // null if the input decoded to no instruction
+            } catch (IOException e) {
+                throw new DisassemblerException(e.getMessage(), e);
+            }
+
+        }
+
+        return next != null;
+
+    }
+
+    @Override
+    public Instruction next() {
+
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        Instruction instruction = next;
+        next = null;
+        return instruction;
+
+    }
+
+}
@@ -0,0 +1,284 @@
+package un.darknet.disassembly.decoding;
+
+import un.darknet.disassembly.InstructionVisitor;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.exception.DisassemblerException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Linear sweep over a range which is split into chunks that are decoded in parallel.
+ * <p>
+ * Every chunk is first decoded from its own start up to the start of the next chunk. A chunk start may lie inside
+ * an instruction, so the stream of a chunk is only trusted from the point where the stream before it joins in.
+ * In a second pass every worker keeps decoding past its chunk end until it reaches a position which a following chunk
+ * also decoded from. Since the next position only depends on the current one, both streams are identical from there on.
+ * The merge follows these synchronization points starting at the first chunk, which gives exactly the sequential output.
+ * <p>
+ * Chunk decoders report to a scratch {@link Diagnostics} which keeps every report with the instruction it belongs to,
+ * the merge passes on only the reports of the instructions it visits. Problems in discarded bytes are not counted,
+ * the counts are the ones of a sequential sweep.
+ */
+public class ParallelSweep {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final Supplier<Decoder> decoders;
+    private final long length;
+    private final int chunkSize;
+
+    /**
+     * @param decoders  supplies decoders which are fed with the whole range
+     * @param length    the length of the range
+     * @param chunkSize how many bytes a worker starts decoding at once
+     */
+    public ParallelSweep(Supplier<Decoder> decoders, long length, int chunkSize) {
+
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+
+        this.decoders = decoders;
+        this.length = length;
+        this.chunkSize = chunkSize;
+
+    }
+
+    /**
+     * Decodes the range and passes the instructions to the visitor in address order.
+     *
+     * @param pool    the pool the chunks are decoded on
+     * @param visitor receives the instructions, may stop the merge
+     * @return the number of instructions passed to the visitor
+     */
+    public long run(ForkJoinPool pool, InstructionVisitor visitor) {
+
+        if (length == 0)
+            return 0;
+
+        Chunk[] chunks = new Chunk[(int) ((length - 1) / chunkSize + 1)];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = new Chunk(i * (long) chunkSize, Math.min(length, (i + 1) * (long) chunkSize));
+
+        runAll(pool, chunks.length, i -> decode(chunks[i]));
+        runAll(pool, chunks.length, i -> synchronize(chunks, i));
+
+        long count = 0;
+        int chunk = 0;
+        int from = 0;
+
+        while (true) {
+
+            Chunk c = chunks[chunk];
+
+            for (Run run : new Run[] {c.body, c.tail}) {
+                int report = run.firstReport(from);
+                for (int i = from; i < run.size; i++) {
+                    report = run.replay(report, i, c.reports.session);
+                    if (run.instructions[i] == null) continue; // decoded to no instruction
+                    count++;
+                    if (!visitor.visit(run.instructions[i]))
+                        return count;
+                }
+                from = 0;
+            }
+
+            if (c.syncChunk < 0)
+                return count;
+
+            from = c.syncIndex;
+            chunk = c.syncChunk;
+
+        }
+
+    }
+
+    /**
+     * First pass, decodes a chunk from its start up to the start of the next chunk.
+     */
+    private void decode(Chunk chunk) {
+
+        chunk.decoder = decoders.get();
+        chunk.decoder.seek(chunk.start);
+        chunk.reports = new Reports(chunk.decoder.getDiagnostics());
+        chunk.reports.run = chunk.body;
+        chunk.decoder.setDiagnostics(chunk.reports);
+
+        while (chunk.decoder.getPosition() < chunk.end)
+            step(chunk.decoder, chunk.body);
+
+    }
+
+    /**
+     * Second pass, continues decoding past the chunk end until the stream joins a following chunk.
+     * Only the bodies of other chunks are read, those are not modified anymore.
+     */
+    private void synchronize(Chunk[] chunks, int index) {
+
+        Chunk chunk = chunks[index];
+        Decoder decoder = chunk.decoder;
+        chunk.decoder = null;
+        chunk.reports.run = chunk.tail;
+
+        long position;
+        while ((position = decoder.getPosition()) < length) {
+
+            Chunk next = chunks[(int) (position / chunkSize)];
+            int found = Arrays.binarySearch(next.body.starts, 0, next.body.size, position);
+
+            if (found >= 0) {
+                chunk.syncChunk = (int) (position / chunkSize);
+                chunk.syncIndex = found;
+                return;
+            }
+
+            step(decoder, chunk.tail);
+
+        }
+
+    }
+
+    private static void step(Decoder decoder, Run run) {
+
+        long position = decoder.getPosition();
+
+        try {
+            run.add(position, decoder.nextInstruction());
+        } catch (IOException e) {
+            throw new DisassemblerException(e.getMessage(), e);
+        }
+
+    }
+
+    private static void runAll(ForkJoinPool pool, int count, IntConsumer task) {
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            tasks.add(pool.submit(() -> task.accept(index)));
+        }
+
+        for (ForkJoinTask<?> t : tasks)
+            t.join();
+
+    }
+
+    private static final class Chunk {
+
+        final long start;
+        final long end;
+        final Run body = new Run(); // decoded from start to end
+        final Run tail = new Run(); // decoded past end until synchronized
+        Decoder decoder;
+        Reports reports;
+        int syncChunk = -1; // chunk the stream continues in, -1 at the end of the range
+        int syncIndex;      // index in the body of syncChunk
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+    }
+
+    /**
+     * Records the reports of a chunk decoder in the run it is decoding.
+     */
+    private static final class Reports extends Diagnostics {
+
+        final Diagnostics session; // the merged reports go here
+        Run run;
+
+        Reports(Diagnostics session) {
+            super(false);
+            this.session = session;
+        }
+
+        @Override
+        public void report(Reason reason, int opcode, long address) {
+            run.report(reason, opcode, address);
+        }
+
+    }
+
+    /**
+     * Decode positions and their instructions, null where the input decoded to no instruction.
+     * Reports are kept with the index of the instruction being decoded, in decode order.
+     */
+    private static final class Run {
+
+        long[] starts = new long[16];
+        Instruction[] instructions = new Instruction[16];
+        int size;
+
+        int reports;
+        int[] reportIndexes = new int[0];
+        int[] reportCodes = new int[0]; // reason << 16 | opcode
+        long[] reportAddresses = new long[0];
+
+        void report(Diagnostics.Reason reason, int opcode, long address) {
+
+            if (reports == reportIndexes.length) {
+                int capacity = Math.max(reports * 2, 4);
+                reportIndexes = Arrays.copyOf(reportIndexes, capacity);
+                reportCodes = Arrays.copyOf(reportCodes, capacity);
+                reportAddresses = Arrays.copyOf(reportAddresses, capacity);
+            }
+
+            reportIndexes[reports] = size; // the instruction is added after the decode
+            reportCodes[reports] = reason.ordinal() << 16 | opcode & 0xFFFF;
+            reportAddresses[reports] = address;
+            reports++;
+
+        }
+
+        /**
+         * @return the first report of the instruction at the index or a later one
+         */
+        int firstReport(int index) {
+
+            int report = 0;
+            while (report < reports && reportIndexes[report] < index)
+                report++;
+
+            return report;
+
+        }
+
+        /**
+         * Passes the reports of the instruction at the index on, starting at a report.
+         *
+         * @return the first report of a later instruction
+         */
+        int replay(int report, int index, Diagnostics target) {
+
+            for (; report < reports && reportIndexes[report] == index; report++)
+                target.report(Diagnostics.Reason.values()[reportCodes[report] >>> 16], reportCodes[report] & 0xFFFF,
+                        reportAddresses[report]);
+
+            return report;
+
+        }
+
+        void add(long start, Instruction instruction) {
+
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                instructions = Arrays.copyOf(instructions, size * 2);
+            }
+
+            starts[size] = start;
+            instructions[size] = instruction;
+            size++;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,259 @@
+package un.darknet.disassembly.decoding;
+
+import un.darknet.disassembly.InstructionVisitor;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.Mnemonic;
+import un.darknet.disassembly.exception.DisassemblerException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Recursive descent over a range: only code reachable from the entry points is decoded.
+ * <p>
+ * A trace decodes sequentially from an address until the control flow ends (return, unconditional jump,
+ * invalid or unknown instruction) or it runs into an address that was already decoded.
+ * Targets of {@code JUMP}, {@code JUMP_RELATIVE} and {@code CALL} instructions are computed like in label resolution
+ * ({@link Decoder#branchTargets(Instruction, long[])}, so operands are not built for them) and start new traces,
+ * which are forked onto the pool so independent code is explored in parallel.
+ * Every address is claimed in a shared bitmap before it is decoded, so no address is decoded twice.
+ * The bitmap is not reset, a descent is run once.
+ */
+public class RecursiveDescent {
+
+    private static final int MAX_TARGETS = 4;
+
+    private final Supplier<Decoder> decoders;
+    private final long length;
+    private final AtomicLongArray visited; // one bit per decode position
+    private final Queue<Decoder> idle = new ConcurrentLinkedQueue<>();
+    private final Queue<Run> runs = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param decoders supplies decoders which are fed with the whole range
+     * @param length   the length of the range
+     */
+    public RecursiveDescent(Supplier<Decoder> decoders, long length) {
+
+        if ((length + 63) >>> 6 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Range too large: " + length);
+
+        this.decoders = decoders;
+        this.length = length;
+        this.visited = new AtomicLongArray((int) ((length + 63) >>> 6));
+
+    }
+
+    /**
+     * Decodes everything reachable from the entry points and passes the instructions to the visitor
+     * ordered by the position they were decoded from.
+     *
+     * @param pool        the pool the traces run on
+     * @param entryPoints positions relative to the start of the range, positions outside of it are ignored
+     * @param visitor     receives the instructions, may stop the merge
+     * @return the number of instructions passed to the visitor
+     */
+    public long run(ForkJoinPool pool, long[] entryPoints, InstructionVisitor visitor) {
+
+        pool.invoke(new Start(entryPoints));
+
+        // every run is ascending, merge them by their current position
+        PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> Long.compare(a.starts[a.next], b.starts[b.next]));
+        for (Run run : runs)
+            if (run.size > 0) queue.add(run);
+        runs.clear();
+
+        long count = 0;
+        while (!queue.isEmpty()) {
+
+            Run run = queue.poll();
+            Instruction instruction = run.instructions[run.next++];
+
+            if (run.next < run.size)
+                queue.add(run);
+
+            if (instruction == null) continue; // decoded to no instruction
+            count++;
+            if (!visitor.visit(instruction))
+                break;
+
+        }
+
+        return count;
+
+    }
+
+    /**
+     * Marks a position as decoded.
+     *
+     * @return true if the caller claimed the position and has to decode it
+     */
+    private boolean claim(long position) {
+
+        int index = (int) (position >>> 6);
+        long bit = 1L << position;
+
+        while (true) {
+            long word = visited.get(index);
+            if ((word & bit) != 0)
+                return false;
+            if (visited.compareAndSet(index, word, word | bit))
+                return true;
+        }
+
+    }
+
+    private void schedule(CountedCompleter<?> parent, long target) {
+
+        if (target < 0 || target >= length || !claim(target))
+            return;
+
+        parent.addToPendingCount(1);
+        new Trace(parent, target).fork();
+
+    }
+
+    /**
+     * Starts traces for the targets of an instruction.
+     *
+     * @return true if execution can continue with the next instruction
+     */
+    private boolean follow(CountedCompleter<?> trace, Decoder decoder, Instruction instruction, long[] targets) {
+
+        int mnemonic = instruction.getMnemonicId();
+        if (mnemonic == Mnemonic.INVALID.getId() || mnemonic == Mnemonic.UNKNOWN.getId())
+            return false;
+
+        switch (instruction.type) {
+
+            case JUMP_RELATIVE:
+            case JUMP:
+            case CALL: {
+
+                int count = decoder.branchTargets(instruction, targets);
+                for (int i = 0; i < count; i++)
+                    schedule(trace, targets[i]);
+
+                return instruction.type != InstructionType.JUMP;
+
+            }
+
+            case RETURN:
+                return false;
+
+            default:
+                return true;
+
+        }
+
+    }
+
+    private final class Start extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] entryPoints;
+
+        Start(long[] entryPoints) {
+            this.entryPoints = entryPoints;
+        }
+
+        @Override
+        public void compute() {
+
+            for (long entry : entryPoints)
+                schedule(this, entry);
+
+            tryComplete();
+
+        }
+
+    }
+
+    private final class Trace extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long start;
+
+        Trace(CountedCompleter<?> parent, long start) {
+            super(parent);
+            this.start = start;
+        }
+
+        @Override
+        public void compute() {
+
+            Decoder decoder = idle.poll();
+            if (decoder == null)
+                decoder = decoders.get();
+
+            Run run = new Run();
+            long[] targets = new long[MAX_TARGETS];
+
+            try {
+
+                decoder.seek(start); // claimed by whoever scheduled this trace
+
+                while (true) {
+
+                    long position = decoder.getPosition();
+                    Instruction instruction = decoder.nextInstruction();
+                    run.add(position, instruction);
+
+                    if (instruction != null && !follow(this, decoder, instruction, targets))
+                        break;
+
+                    long next = decoder.getPosition();
+                    if (next >= length || !claim(next)) // end of range or joined decoded code
+                        break;
+
+                }
+
+            } catch (IOException e) {
+                throw new DisassemblerException(e.getMessage(), e);
+            } finally {
+                idle.add(decoder);
+                runs.add(run);
+            }
+
+            tryComplete();
+
+        }
+
+    }
+
+    /**
+     * Decode positions of a trace and their instructions, null where the input decoded to no instruction.
+     */
+    private static final class Run {
+
+        long[] starts = new long[16];
+        Instruction[] instructions = new Instruction[16];
+        int size;
+        int next; // merge position
+
+        void add(long start, Instruction instruction) {
+
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                instructions = Arrays.copyOf(instructions, size * 2);
+            }
+
+            starts[size] = start;
+            instructions[size] = instruction;
+            size++;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package un.darknet.disassembly.exception;
+
+import un.darknet.disassembly.decoding.DecodeStatus;
+
+import java.io.IOException;
+
+/**
+ * Thrown by decoders when the bytes being decoded are not a valid instruction.
+ * The decoder catches it and returns an invalid instruction, so it does not capture a stack trace
+ * and only builds its message when asked for it.
+ */
+public class InvalidEncodingException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DecodeStatus status;
+    private final long value;
+
+    /**
+     * @param status why the encoding is invalid
+     * @param value  the offending value, e.g. the segment register index
+     */
+    public InvalidEncodingException(DecodeStatus status, long value) {
+        this.status = status;
+        this.value = value;
+    }
+
+    public DecodeStatus getStatus() {
+        return status;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public String getMessage() {
+        return status + ": " + value;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
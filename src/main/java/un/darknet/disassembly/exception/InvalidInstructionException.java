@@ -1,18 +1,31 @@
 package un.darknet.disassembly.exception;
 
 import un.darknet.disassembly.data.Opcode;
+import un.darknet.disassembly.decoding.DecodeStatus;
 
+/**
+ * Thrown by {@link un.darknet.disassembly.decoding.Decoder#next()} for bytes which are not a valid instruction.
+ * Decoding invalid bytes is common, so no stack trace is captured and the message is only built when asked for.
+ */
 public class InvalidInstructionException extends Exception{
 
+    private static final long serialVersionUID = 1L;
+
     long pos;
     Opcode partialOpcode; // maybe partially decoded opcode
+    DecodeStatus status = DecodeStatus.INVALID;
 
     public InvalidInstructionException(long pos, Opcode partialOpcode, Throwable cause){
-        super(String.format("Invalid instruction at 0x%x: %s", pos, partialOpcode != null ? partialOpcode : ""), cause);
+        super(null, cause, false, false);
         this.pos = pos;
         this.partialOpcode = partialOpcode;
     }
 
+    public InvalidInstructionException(long pos, Opcode partialOpcode, DecodeStatus status){
+        this(pos, partialOpcode, (Throwable) null);
+        this.status = status;
+    }
+
     public long getPos(){
         return pos;
     }
@@ -25,6 +38,16 @@ public class InvalidInstructionException extends Exception{
         return partialOpcode;
     }
 
+    /**
+     * @return why the instruction is invalid
+     */
+    public DecodeStatus getStatus(){
+        return status;
+    }
 
+    @Override
+    public String getMessage(){
+        return String.format("Invalid instruction at 0x%x: %s", pos, partialOpcode != null ? partialOpcode : "");
+    }
 
 }
@@ -0,0 +1,55 @@
+package un.darknet.disassembly.input;
+
+/**
+ * {@link ByteSource} over a heap byte array, the array is not copied.
+ */
+public class ArrayByteSource implements ByteSource {
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    public ArrayByteSource(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    public ArrayByteSource(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length) + ") out of bounds for length " + data.length);
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int get(long index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        return data[offset + (int) index] & 0xFF;
+    }
+
+    @Override
+    public int get(long index, byte[] dst, int offset, int length) {
+        if (index < 0 || index > this.length)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.length);
+        int count = (int) Math.min(length, this.length - index);
+        System.arraycopy(data, this.offset + (int) index, dst, offset, count);
+        return count;
+    }
+
+    @Override
+    public byte[] array() {
+        return data;
+    }
+
+    @Override
+    public int arrayOffset() {
+        return offset;
+    }
+
+}
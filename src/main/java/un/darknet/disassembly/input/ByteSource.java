@@ -0,0 +1,46 @@
+package un.darknet.disassembly.input;
+
+/**
+ * Random access input for the decoders, addressed with long offsets.
+ * Implementations must allow concurrent reads.
+ */
+public interface ByteSource {
+
+    /**
+     * @return the number of bytes in this source
+     */
+    long length();
+
+    /**
+     * @param index the byte offset
+     * @return the unsigned byte at the offset
+     * @throws IndexOutOfBoundsException if the offset is outside of this source
+     */
+    int get(long index);
+
+    /**
+     * Copies bytes into a buffer.
+     *
+     * @param index  the byte offset to start at
+     * @param dst    the buffer to copy into
+     * @param offset the offset in the buffer
+     * @param length the maximum number of bytes to copy
+     * @return the number of bytes copied, less than length when the end of the source is reached
+     */
+    int get(long index, byte[] dst, int offset, int length);
+
+    /**
+     * @return the backing array if this source is a heap array, otherwise null
+     */
+    default byte[] array() {
+        return null;
+    }
+
+    /**
+     * @return the offset of index 0 in {@link #array()}
+     */
+    default int arrayOffset() {
+        return 0;
+    }
+
+}
@@ -0,0 +1,120 @@
+package un.darknet.disassembly.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link ByteSource} over a memory mapped file.
+ * The file is mapped read-only in chunks of {@link #CHUNK_SIZE} bytes, so sources larger than 2 GB
+ * can be addressed and nothing is copied onto the heap.
+ * <p>
+ * Closing the source closes the file channel; the mappings themselves are released once the source is
+ * garbage collected, since the JDK offers no way to unmap them explicitly.
+ */
+public class MappedByteSource implements ByteSource, Closeable {
+
+    static final int CHUNK_SHIFT = 30;
+    public static final long CHUNK_SIZE = 1L << CHUNK_SHIFT; // 1 GB
+    static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long length;
+
+    private MappedByteSource(FileChannel channel, long offset, long length) throws IOException {
+
+        this.channel = channel;
+        this.length = length;
+
+        int count = (int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+        chunks = new MappedByteBuffer[count];
+
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(CHUNK_SIZE, length - start));
+        }
+
+    }
+
+    /**
+     * Maps a whole file.
+     *
+     * @param file the file
+     * @return the source
+     * @throws IOException if the file cannot be mapped
+     */
+    public static MappedByteSource map(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedByteSource(channel, 0, channel.size());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a region of a file.
+     *
+     * @param file   the file
+     * @param offset the offset of the region in the file
+     * @param length the length of the region
+     * @return the source
+     * @throws IOException if the file cannot be mapped
+     */
+    public static MappedByteSource map(Path file, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (offset < 0 || length < 0 || offset + length > channel.size())
+                throw new IndexOutOfBoundsException("Region [" + offset + ", " + (offset + length) + ") outside of file");
+            return new MappedByteSource(channel, offset, length);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int get(long index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK)) & 0xFF;
+    }
+
+    @Override
+    public int get(long index, byte[] dst, int offset, int length) {
+
+        if (index < 0 || index > this.length)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.length);
+
+        int count = (int) Math.min(length, this.length - index);
+        int copied = 0;
+
+        while (copied < count) { // a range may span two chunks
+            long at = index + copied;
+            MappedByteBuffer chunk = chunks[(int) (at >>> CHUNK_SHIFT)];
+            int position = (int) (at & CHUNK_MASK);
+            int n = Math.min(count - copied, chunk.limit() - position);
+            chunk.get(position, dst, offset + copied, n);
+            copied += n;
+        }
+
+        return count;
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,108 @@
+package un.darknet.disassembly.labels;
+
+import java.util.Arrays;
+
+/**
+ * Index of the references between instructions and labels, built by {@link LabelTable#getReferences()}.
+ * <p>
+ * The references to a label are a slice of one array sorted by label and then by address (compressed sparse rows),
+ * found in constant time through the offsets of the label. The references from a range of addresses are a slice of
+ * a second array sorted by address, found with two binary searches. A built index does not change, labels and
+ * references added to the table afterwards are only seen by the next index.
+ */
+public class CrossReferences {
+
+    private static final long[] NONE = new long[0];
+
+    private final LabelTable table;
+    private final int[] offsets;      // label id -> first reference, labels + 1 entries
+    private final long[] sources;     // referencing addresses, by label then address
+    private final long[] fromSources; // referencing addresses, sorted
+    private final long[] fromTargets; // the referenced addresses, in the order of fromSources
+
+    CrossReferences(LabelTable table, int[] offsets, long[] sources, long[] fromSources, long[] fromTargets) {
+        this.table = table;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.fromSources = fromSources;
+        this.fromTargets = fromTargets;
+    }
+
+    /**
+     * @param target the address of a label
+     * @return how many instructions reference it
+     */
+    public int countReferencesTo(long target) {
+
+        int id = id(target);
+        return id < 0 ? 0 : offsets[id + 1] - offsets[id];
+
+    }
+
+    /**
+     * @param target the address of a label
+     * @return the addresses of the instructions referencing it, sorted
+     */
+    public long[] referencesTo(long target) {
+
+        int id = id(target);
+        return id < 0 ? NONE : Arrays.copyOfRange(sources, offsets[id], offsets[id + 1]);
+
+    }
+
+    private int id(long target) {
+
+        int id = table.id(target);
+        return id < offsets.length - 1 ? id : -1; // -1 or added after the index was built
+
+    }
+
+    /**
+     * @param from the first address of the range
+     * @param to   the end of the range, exclusive
+     * @return how many references the instructions in the range make
+     */
+    public int countReferencesFrom(long from, long to) {
+        return Math.max(0, lowerBound(to) - lowerBound(from));
+    }
+
+    /**
+     * @param from the first address of the range
+     * @param to   the end of the range, exclusive
+     * @return the addresses referenced by the instructions in the range, in the order of the instructions
+     */
+    public long[] referencesFrom(long from, long to) {
+
+        int start = lowerBound(from);
+        return Arrays.copyOfRange(fromTargets, start, Math.max(start, lowerBound(to)));
+
+    }
+
+    /**
+     * @return the index of the first reference made at or after the address
+     */
+    private int lowerBound(long address) {
+
+        int low = 0;
+        int high = fromSources.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (fromSources[middle] < address)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+
+    }
+
+    /**
+     * @return the number of references
+     */
+    public int size() {
+        return sources.length;
+    }
+
+}
@@ -6,24 +6,50 @@ public class Label {
 
     public Label(long address, LabelType type)  {
 
-        this.address = address;
-        this.type = type;
+        this(address, type, LabelScheme.getGlobalScheme());
 
-        // generate name based on address and naming scheme
-        String prefix = type.prefix;
-        String name = LabelScheme.generate(address);
+    }
 
-        this.name = prefix + name;
+    /**
+     * The name is generated from the scheme when it is first needed, most labels of a large program are never shown.
+     */
+    public Label(long address, LabelType type, LabelScheme scheme)  {
+
+        this.address = address;
+        this.type = type;
+        this.scheme = scheme;
 
     }
 
-    public String name;
+    private final LabelScheme scheme;
+    private volatile String name;
     public LabelType type;
     public long address;
     public Instruction[] references;
 
+    /**
+     * @return the name, the type prefix followed by the name the scheme generates for the address
+     */
+    public String getName() {
+
+        String result = name;
+        if (result != null)
+            return result;
+
+        synchronized (this) { // random schemes must give every reader the same name
+            if (name == null)
+                name = type.prefix + scheme.name(address);
+            return name;
+        }
+
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
     @Override
     public String toString() {
-        return name;
+        return getName();
     }
 }
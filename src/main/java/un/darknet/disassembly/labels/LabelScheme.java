@@ -1,12 +1,22 @@
 package un.darknet.disassembly.labels;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 public enum LabelScheme {
 
     ADDRESS,
     FRIENDLY;
 
+    /**
+     * Default scheme for new sessions, a session names its labels with the scheme of its
+     * {@link un.darknet.disassembly.DisassemblyOptions}.
+     */
     public static LabelScheme globalScheme = ADDRESS;
 
+    /**
+     * @deprecated set the scheme per session with {@link un.darknet.disassembly.DisassemblyOptions#setLabelScheme(LabelScheme)}
+     */
+    @Deprecated
     public static void setGlobalScheme(LabelScheme scheme) {
         globalScheme = scheme;
     }
@@ -32,11 +42,11 @@ public enum LabelScheme {
     };
 
     public static String getRandomFruit() {
-        return fruits[(int) (Math.random() * fruits.length)];
+        return fruits[ThreadLocalRandom.current().nextInt(fruits.length)];
     }
 
     public static String getRandomFoodType() {
-        return foodTypes[(int) (Math.random() * foodTypes.length)];
+        return foodTypes[ThreadLocalRandom.current().nextInt(foodTypes.length)];
     }
 
     public static String getRandomFood() {
@@ -44,9 +54,25 @@ public enum LabelScheme {
     }
 
 
+    /**
+     * @deprecated names with the default scheme, use {@link #name(long)} on the scheme of the session
+     */
+    @Deprecated
     public static String generate(long address) {
 
-        switch (globalScheme) {
+        return globalScheme.name(address);
+
+    }
+
+    /**
+     * Generates a label name for an address with this scheme.
+     *
+     * @param address the label address
+     * @return the name without type prefix
+     */
+    public String name(long address) {
+
+        switch (this) {
 
             case ADDRESS:
                 return String.format("%08X", address);
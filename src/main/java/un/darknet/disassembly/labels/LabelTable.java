@@ -0,0 +1,390 @@
+package un.darknet.disassembly.labels;
+
+import un.darknet.disassembly.data.Instruction;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Labels by address, in an open addressing table over primitive addresses.
+ * <p>
+ * Looking up a target while decoding neither boxes the address nor allocates an entry, a label is only allocated
+ * the first time an address is a target. The {@link java.util.Map} view boxes, it is meant for callers and not for
+ * the decoding loop.
+ * <p>
+ * The table also records which instructions reference which label, {@link #getReferences()} indexes them.
+ * Not thread safe.
+ */
+public class LabelTable extends AbstractMap<Long, Label> {
+
+    private static final int INITIAL_CAPACITY = 64; // a power of two
+
+    private long[] addresses = new long[INITIAL_CAPACITY];
+    private Label[] labels = new Label[INITIAL_CAPACITY]; // null marks a free slot
+    private int[] ids = new int[INITIAL_CAPACITY];        // order the labels were added in
+    private Label[] byId = new Label[INITIAL_CAPACITY];
+    private int size;
+
+    // references in the order they were recorded
+    private int referenceCount;
+    private int[] referenceTargets = new int[INITIAL_CAPACITY]; // label ids
+    private long[] referenceSources = new long[INITIAL_CAPACITY];
+    private Instruction[] referenceInstructions = new Instruction[INITIAL_CAPACITY];
+    private CrossReferences references; // null once a reference was recorded after building
+
+    /**
+     * @param address the address
+     * @return the label at the address, null if there is none
+     */
+    public Label get(long address) {
+        return labels[slot(address)];
+    }
+
+    /**
+     * Returns the label at an address, creating it on the first call for the address.
+     *
+     * @param address the target address
+     * @param type    the type of a new label
+     * @param scheme  the naming scheme of a new label
+     * @return the label
+     */
+    public Label label(long address, LabelType type, LabelScheme scheme) {
+
+        int slot = slot(address);
+        if (labels[slot] != null)
+            return labels[slot];
+
+        Label label = new Label(address, type, scheme);
+        insert(slot, label);
+
+        return label;
+
+    }
+
+    /**
+     * Adds a label, replacing the label at its address.
+     *
+     * @param label the label
+     * @return the replaced label, null if there was none
+     */
+    public Label put(Label label) {
+
+        int slot = slot(label.address);
+        Label previous = labels[slot];
+
+        if (previous != null) {
+            labels[slot] = label;
+            byId[ids[slot]] = label;
+        } else
+            insert(slot, label);
+
+        return previous;
+
+    }
+
+    private void insert(int slot, Label label) {
+
+        if (size == byId.length)
+            byId = Arrays.copyOf(byId, size * 2);
+
+        addresses[slot] = label.address;
+        labels[slot] = label;
+        ids[slot] = size;
+        byId[size] = label;
+
+        if (++size * 2 > labels.length)
+            grow();
+
+    }
+
+    /**
+     * @return the id of the label at the address, -1 if there is none
+     */
+    int id(long address) {
+
+        int slot = slot(address);
+        return labels[slot] != null ? ids[slot] : -1;
+
+    }
+
+    /**
+     * @return the slot of the address, or the free slot it would be inserted at
+     */
+    private int slot(long address) {
+
+        int mask = labels.length - 1;
+        int slot = hash(address) & mask;
+
+        while (labels[slot] != null && addresses[slot] != address)
+            slot = (slot + 1) & mask;
+
+        return slot;
+
+    }
+
+    private static int hash(long address) {
+        long h = address * 0x9E3779B97F4A7C15L; // addresses are often aligned, spread the low bits
+        return (int) (h ^ h >>> 32);
+    }
+
+    private void grow() {
+
+        long[] oldAddresses = addresses;
+        Label[] oldLabels = labels;
+        int[] oldIds = ids;
+
+        addresses = new long[oldLabels.length * 2];
+        labels = new Label[oldLabels.length * 2];
+        ids = new int[oldLabels.length * 2];
+
+        for (int i = 0; i < oldLabels.length; i++) {
+            if (oldLabels[i] != null) {
+                int slot = slot(oldAddresses[i]);
+                addresses[slot] = oldAddresses[i];
+                labels[slot] = oldLabels[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+
+    }
+
+    /**
+     * Records that an instruction references a label of this table.
+     *
+     * @param label       the label
+     * @param instruction the referencing instruction
+     */
+    public void reference(Label label, Instruction instruction) {
+
+        int id = id(label.address);
+        if (id < 0)
+            throw new IllegalArgumentException("Label " + label + " is not in the table");
+
+        if (referenceCount == referenceTargets.length) {
+            referenceTargets = Arrays.copyOf(referenceTargets, referenceCount * 2);
+            referenceSources = Arrays.copyOf(referenceSources, referenceCount * 2);
+            referenceInstructions = Arrays.copyOf(referenceInstructions, referenceCount * 2);
+        }
+
+        referenceTargets[referenceCount] = id;
+        referenceSources[referenceCount] = instruction.location;
+        referenceInstructions[referenceCount] = instruction;
+        referenceCount++;
+        references = null;
+
+    }
+
+    /**
+     * Forgets the recorded references, e.g. before all instructions are resolved again.
+     */
+    public void clearReferences() {
+
+        Arrays.fill(referenceInstructions, 0, referenceCount, null);
+        referenceCount = 0;
+        references = null;
+
+    }
+
+    /**
+     * Indexes the recorded references, and sets {@link Label#references} of every label to the instructions
+     * referencing it, sorted by address. The index is kept until another reference is recorded.
+     *
+     * @return the index
+     */
+    public CrossReferences getReferences() {
+
+        if (references == null)
+            references = buildReferences();
+
+        return references;
+
+    }
+
+    private CrossReferences buildReferences() {
+
+        int count = referenceCount;
+        int[] order = sortBySource(count);
+
+        // by source, the order of the range queries
+        long[] fromSources = new long[count];
+        long[] fromTargets = new long[count];
+        for (int i = 0; i < count; i++) {
+            fromSources[i] = referenceSources[order[i]];
+            fromTargets[i] = byId[referenceTargets[order[i]]].address;
+        }
+
+        // by label, a stable counting sort keeps the sources of a label sorted
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < count; i++)
+            offsets[referenceTargets[i] + 1]++;
+        for (int id = 0; id < size; id++)
+            offsets[id + 1] += offsets[id];
+
+        int[] next = Arrays.copyOf(offsets, size);
+        long[] sources = new long[count];
+        Instruction[] instructions = new Instruction[count];
+        for (int i = 0; i < count; i++) {
+            int reference = order[i];
+            int position = next[referenceTargets[reference]]++;
+            sources[position] = referenceSources[reference];
+            instructions[position] = referenceInstructions[reference];
+        }
+
+        for (int id = 0; id < size; id++)
+            byId[id].references = Arrays.copyOfRange(instructions, offsets[id], offsets[id + 1]);
+
+        return new CrossReferences(this, offsets, sources, fromSources, fromTargets);
+
+    }
+
+    /**
+     * @return the reference indexes ordered by source address, stable
+     */
+    private int[] sortBySource(int count) {
+
+        int[] order = new int[count];
+        boolean sorted = true;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            sorted &= i == 0 || referenceSources[i - 1] <= referenceSources[i];
+            min = Math.min(min, referenceSources[i]);
+            max = Math.max(max, referenceSources[i]);
+        }
+
+        if (sorted) // a sweep records in address order
+            return order;
+
+        if (max - min >= 0 && max - min <= Integer.MAX_VALUE) {
+
+            // offset from the lowest source in the upper half, index in the lower half, equal sources keep their order
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++)
+                keys[i] = (referenceSources[i] - min) << 32 | i;
+
+            Arrays.sort(keys);
+            for (int i = 0; i < count; i++)
+                order[i] = (int) keys[i];
+
+            return order;
+
+        }
+
+        // sources too far apart to pack, merge sort the indexes
+        int[] buffer = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+
+            for (int from = 0; from < count; from += 2 * width) {
+
+                int middle = Math.min(from + width, count);
+                int to = Math.min(from + 2 * width, count);
+                int left = from;
+                int right = middle;
+
+                for (int i = from; i < to; i++) {
+                    if (left < middle && (right >= to || referenceSources[order[left]] <= referenceSources[order[right]]))
+                        buffer[i] = order[left++];
+                    else
+                        buffer[i] = order[right++];
+                }
+
+            }
+
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+
+        }
+
+        return order;
+
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Label get(Object key) {
+        return key instanceof Long ? get((long) (Long) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Label put(Long key, Label value) {
+
+        if (key != value.address)
+            throw new IllegalArgumentException("Label " + value + " is not at " + key);
+
+        return put(value);
+
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(labels, null);
+        Arrays.fill(byId, null);
+        size = 0;
+        clearReferences();
+    }
+
+    @Override
+    public Set<Entry<Long, Label>> entrySet() {
+
+        return new AbstractSet<Entry<Long, Label>>() {
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Entry<Long, Label>> iterator() {
+
+                return new Iterator<Entry<Long, Label>>() {
+
+                    int slot = next(0);
+
+                    int next(int from) {
+                        while (from < labels.length && labels[from] == null)
+                            from++;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < labels.length;
+                    }
+
+                    @Override
+                    public Entry<Long, Label> next() {
+
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+
+                        Entry<Long, Label> entry = new SimpleImmutableEntry<>(addresses[slot], labels[slot]);
+                        slot = next(slot + 1);
+
+                        return entry;
+
+                    }
+
+                };
+
+            }
+
+        };
+
+    }
+
+}
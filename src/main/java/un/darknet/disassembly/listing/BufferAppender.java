@@ -0,0 +1,70 @@
+package un.darknet.disassembly.listing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link Appendable} which encodes characters as UTF-8 into a direct {@link ByteBuffer}, growing it when it is full.
+ */
+final class BufferAppender implements Appendable {
+
+    private ByteBuffer buffer;
+    private char highSurrogate; // of a pair split over two appends
+
+    BufferAppender(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public BufferAppender append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public BufferAppender append(CharSequence csq, int start, int end) {
+
+        for (int i = start; i < end; i++)
+            append(csq.charAt(i));
+
+        return this;
+
+    }
+
+    @Override
+    public BufferAppender append(char c) {
+
+        if (c < 0x80) {
+            ensure(1).put((byte) c);
+        } else if (c < 0x800) {
+            ensure(2).put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c) && highSurrogate != 0) {
+            int code = Character.toCodePoint(highSurrogate, c);
+            highSurrogate = 0;
+            ensure(4).put((byte) (0xF0 | code >> 18)).put((byte) (0x80 | code >> 12 & 0x3F))
+                    .put((byte) (0x80 | code >> 6 & 0x3F)).put((byte) (0x80 | code & 0x3F));
+        } else {
+            ensure(3).put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+        }
+
+        return this;
+
+    }
+
+    private ByteBuffer ensure(int bytes) {
+
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            buffer = grown.put(buffer);
+        }
+
+        return buffer;
+
+    }
+
+}
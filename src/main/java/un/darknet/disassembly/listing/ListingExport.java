@@ -0,0 +1,183 @@
+package un.darknet.disassembly.listing;
+
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.Program;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Writes the listing of a {@link Program} to a file, rendered in parallel.
+ * <p>
+ * The instructions are split into ranges of {@link #getRangeSize()} instructions. Every range is formatted on the pool
+ * into its own direct buffer as UTF-8, while the calling thread writes the finished buffers in order with gathering
+ * writes. At most {@link #getWindow()} ranges are in flight, so memory stays bounded however large the program is,
+ * and the buffers of written ranges are reused. The file is the same as formatting the instructions one by one.
+ */
+public class ListingExport {
+
+    public static final int DEFAULT_RANGE_SIZE = 1 << 14;
+    private static final int BYTES_PER_LINE = 48; // initial estimate, buffers grow when a range needs more
+    private static final int MAX_INITIAL_BUFFER = 1 << 26;
+
+    private final ListingFormatter formatter;
+    private int rangeSize = DEFAULT_RANGE_SIZE;
+    private int window;
+
+    public ListingExport() {
+        this(ListingFormatter.DEFAULT);
+    }
+
+    /**
+     * @param formatter formats the lines, shared by all workers
+     */
+    public ListingExport(ListingFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    /**
+     * Writes the listing of a program, replacing the file if it exists.
+     *
+     * @param program the program
+     * @param file    the file to write
+     * @param pool    the pool the ranges are formatted on
+     * @return the number of bytes written
+     */
+    public long export(Program program, Path file, ForkJoinPool pool) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return export(program.getInstructions(), channel, pool);
+        }
+
+    }
+
+    /**
+     * Writes one line per instruction at the position of the channel.
+     *
+     * @param instructions the instructions, not modified while exporting
+     * @param channel      the channel to write to, not closed
+     * @param pool         the pool the ranges are formatted on
+     * @return the number of bytes written
+     */
+    public long export(List<Instruction> instructions, FileChannel channel, ForkJoinPool pool) throws IOException {
+
+        int size = instructions.size();
+        int ranges = size / rangeSize + (size % rangeSize != 0 ? 1 : 0);
+        int initialBuffer = (int) Math.min((long) rangeSize * BYTES_PER_LINE, MAX_INITIAL_BUFFER);
+        int inFlight = window > 0 ? window : 2 * pool.getParallelism();
+
+        ArrayDeque<ForkJoinTask<ByteBuffer>> pending = new ArrayDeque<>(inFlight);
+        ArrayDeque<ByteBuffer> free = new ArrayDeque<>(inFlight);
+        ByteBuffer[] batch = new ByteBuffer[inFlight];
+
+        long written = 0;
+        int next = 0;
+
+        try {
+
+            while (next < ranges || !pending.isEmpty()) {
+
+                while (next < ranges && pending.size() < inFlight) {
+
+                    ByteBuffer buffer = free.isEmpty() ? ByteBuffer.allocateDirect(initialBuffer) : free.poll();
+                    int from = next * rangeSize;
+                    int to = from + Math.min(rangeSize, size - from);
+
+                    pending.add(pool.submit(() -> render(instructions, from, to, buffer)));
+                    next++;
+
+                }
+
+                // wait for the oldest range, then take the ones finished after it
+                int count = 0;
+                batch[count++] = pending.poll().join();
+                while (!pending.isEmpty() && pending.peek().isDone())
+                    batch[count++] = pending.poll().join();
+
+                written += write(channel, batch, count);
+
+                for (int i = 0; i < count; i++) {
+                    free.add(batch[i].clear());
+                    batch[i] = null;
+                }
+
+            }
+
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ForkJoinTask<ByteBuffer> task : pending)
+                task.cancel(false);
+        }
+
+        return written;
+
+    }
+
+    private ByteBuffer render(List<Instruction> instructions, int from, int to, ByteBuffer buffer) {
+
+        BufferAppender out = new BufferAppender(buffer);
+
+        try {
+            for (int i = from; i < to; i++)
+                formatter.format(instructions.get(i), out).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by the appender
+        }
+
+        return out.getBuffer().flip();
+
+    }
+
+    private static long write(FileChannel channel, ByteBuffer[] buffers, int count) throws IOException {
+
+        long written = 0;
+        while (buffers[count - 1].hasRemaining())
+            written += channel.write(buffers, 0, count);
+
+        return written;
+
+    }
+
+    public int getRangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * @param rangeSize how many instructions a worker formats into one buffer
+     */
+    public void setRangeSize(int rangeSize) {
+
+        if (rangeSize <= 0)
+            throw new IllegalArgumentException("Range size must be positive: " + rangeSize);
+
+        this.rangeSize = rangeSize;
+
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @param window how many ranges are formatted or waiting to be written at once, 0 for twice the parallelism of the pool
+     */
+    public void setWindow(int window) {
+
+        if (window < 0)
+            throw new IllegalArgumentException("Window must not be negative: " + window);
+
+        this.window = window;
+
+    }
+
+}
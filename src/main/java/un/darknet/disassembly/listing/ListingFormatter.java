@@ -0,0 +1,286 @@
+package un.darknet.disassembly.listing;
+
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.Mnemonic;
+import un.darknet.disassembly.data.Opcode;
+import un.darknet.disassembly.input.ByteSource;
+import un.darknet.disassembly.operand.Operand;
+import un.darknet.disassembly.operand.OperandObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static un.darknet.disassembly.operand.Operand.*;
+
+/**
+ * Writes instructions as text into an {@link Appendable}, e.g. a {@link StringBuilder}, a {@link java.nio.CharBuffer}
+ * or a {@link java.io.Writer}.
+ * <p>
+ * The instruction text is the same as {@link Instruction#toString()}, but nothing is allocated per instruction:
+ * mnemonic, register and label names are the strings cached by the decoder and constants are written digit by digit.
+ * Optional columns in front of the text show the address and the bytes of an instruction.
+ * Once configured, a formatter can be shared by any number of threads.
+ */
+public class ListingFormatter {
+
+    /**
+     * Formats the instruction text only, without columns.
+     */
+    public static final ListingFormatter DEFAULT = new ListingFormatter();
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final String[] MEMORY_OPEN = {"", "["};
+    private static final String[] MEMORY_CLOSE = {"", "]"};
+
+    private boolean addresses;
+    private int addressDigits = 8;
+    private long base;
+    private ByteSource input;
+    private long inputOffset;
+    private int byteColumns;
+
+    /**
+     * Writes one line per instruction.
+     *
+     * @param instructions the instructions
+     * @param out          where to write to
+     * @return out
+     */
+    public <A extends Appendable> A format(Iterable<Instruction> instructions, A out) throws IOException {
+
+        for (Instruction instruction : instructions)
+            format(instruction, out).append('\n');
+
+        return out;
+
+    }
+
+    /**
+     * Writes an instruction with the enabled columns, without a line break.
+     *
+     * @param instruction the instruction
+     * @param out         where to write to
+     * @return out
+     */
+    public <A extends Appendable> A format(Instruction instruction, A out) throws IOException {
+
+        if (addresses) {
+            hex(base + instruction.location, addressDigits, out);
+            out.append("  ");
+        }
+
+        if (byteColumns > 0) {
+
+            int length = (int) Math.min(instruction.getLength(), input.length() - inputOffset - instruction.location);
+            for (int i = 0; i < byteColumns; i++) {
+                if (i < length)
+                    hex(input.get(inputOffset + instruction.location + i), 2, out.append(i > 0 ? " " : ""));
+                else
+                    out.append(i > 0 ? "   " : "  ");
+            }
+
+            out.append(length > byteColumns ? "+ " : "  ");
+
+        }
+
+        return text(instruction.opcode, out);
+
+    }
+
+    /**
+     * Like {@link #format(Instruction, Appendable)}, for builders which can not throw.
+     */
+    public StringBuilder format(Instruction instruction, StringBuilder out) {
+
+        try {
+            format(instruction, (Appendable) out);
+            return out;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by a StringBuilder
+        }
+
+    }
+
+    /**
+     * Writes the text of an opcode into a builder, see {@link #text(Opcode, Appendable)}.
+     */
+    public StringBuilder format(Opcode opcode, StringBuilder out) {
+
+        try {
+            return text(opcode, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+    }
+
+    /**
+     * Writes an operand into a builder, see {@link #operand(Operand, Appendable)}.
+     */
+    public StringBuilder format(Operand operand, StringBuilder out) {
+
+        try {
+            return operand(operand, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+    }
+
+    /**
+     * Writes the mnemonic and the operands of an opcode.
+     *
+     * @param opcode the opcode
+     * @param out    where to write to
+     * @return out
+     */
+    public <A extends Appendable> A text(Opcode opcode, A out) throws IOException {
+
+        Operand[] operands = opcode.operands();
+        out.append(Mnemonic.get(opcode.mnemonicId()).getName());
+
+        if (operands == null)
+            return out;
+
+        for (int i = 0; i < operands.length; i++) {
+            out.append(i == 0 ? " " : ", ");
+            operand(operands[i], out);
+        }
+
+        return out;
+
+    }
+
+    /**
+     * Writes an operand, e.g. {@code ES:[EAX + 0x10]}.
+     *
+     * @param operand the operand
+     * @param out     where to write to
+     * @return out
+     */
+    public <A extends Appendable> A operand(Operand operand, A out) throws IOException {
+
+        int memory = operand.types.has(TYPE_MEMORY) ? 1 : 0;
+
+        for (OperandObject object : operand.objects) {
+            if (object.type == TYPE_SEGMENT) {
+                if (object.value instanceof Long) // far pointer selector
+                    hex((long) object.value, 0, out.append("0x"));
+                else
+                    out.append((String) object.value);
+                out.append(':');
+                break;
+            }
+        }
+
+        out.append(MEMORY_OPEN[memory]);
+
+        boolean first = true;
+        for (OperandObject object : operand.objects) {
+
+            if (object.type == TYPE_SEGMENT)
+                continue;
+
+            if (!first)
+                out.append(" + ");
+            first = false;
+
+            if (object.type == TYPE_REGISTER)
+                out.append((String) object.value);
+            else if (object.type == TYPE_CONSTANT) {
+                if (object.label != null)
+                    out.append(object.label.getName());
+                else
+                    hex((long) object.value, 0, out.append("0x"));
+            }
+
+        }
+
+        out.append(MEMORY_CLOSE[memory]);
+        return out;
+
+    }
+
+    /**
+     * Writes a value as unsigned upper case hex digits.
+     *
+     * @param value  the value
+     * @param digits the minimum number of digits, padded with zeros
+     * @param out    where to write to
+     */
+    static void hex(long value, int digits, Appendable out) throws IOException {
+
+        int significant = Math.max(1, (67 - Long.numberOfLeadingZeros(value)) >>> 2);
+        for (int shift = (Math.max(significant, digits) - 1) * 4; shift >= 0; shift -= 4)
+            out.append(HEX[(int) (value >>> shift) & 0xF]);
+
+    }
+
+    public boolean isAddresses() {
+        return addresses;
+    }
+
+    /**
+     * @param addresses whether lines start with the address of the instruction
+     */
+    public void setAddresses(boolean addresses) {
+        this.addresses = addresses;
+    }
+
+    public int getAddressDigits() {
+        return addressDigits;
+    }
+
+    /**
+     * @param addressDigits the minimum number of hex digits of an address
+     */
+    public void setAddressDigits(int addressDigits) {
+        this.addressDigits = addressDigits;
+    }
+
+    public long getBase() {
+        return base;
+    }
+
+    /**
+     * @param base added to the instruction locations in the address column, e.g. the load address of the code
+     */
+    public void setBase(long base) {
+        this.base = base;
+    }
+
+    /**
+     * Shows the bytes of every instruction, the input must be the one the instructions were decoded from.
+     * Prefixes are not part of an instruction's bytes, like they are not part of its length.
+     * Instructions longer than the column are cut and marked with a +.
+     *
+     * @param input   the decoded input, null to hide the column
+     * @param columns how many bytes the column shows
+     */
+    public void setBytes(ByteSource input, int columns) {
+        setBytes(input, 0, columns);
+    }
+
+    /**
+     * Like {@link #setBytes(ByteSource, int)}, for instructions decoded from a range of the input.
+     *
+     * @param input   the decoded input, null to hide the column
+     * @param offset  the offset the decoder was fed with, instruction locations are relative to it
+     * @param columns how many bytes the column shows
+     */
+    public void setBytes(ByteSource input, long offset, int columns) {
+
+        if (input != null && columns <= 0)
+            throw new IllegalArgumentException("Byte columns must be positive: " + columns);
+
+        this.input = input;
+        this.inputOffset = offset;
+        this.byteColumns = input == null ? 0 : columns;
+
+    }
+
+    public int getByteColumns() {
+        return byteColumns;
+    }
+
+}
@@ -1,6 +1,7 @@
 package un.darknet.disassembly.operand;
 
 import un.darknet.disassembly.X86.Constants;
+import un.darknet.disassembly.listing.ListingFormatter;
 import un.darknet.disassembly.util.Flags;
 
 import java.util.Arrays;
@@ -46,31 +47,7 @@ public class Operand {
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        OperandObject segment = find(TYPE_SEGMENT);
-        if(segment != null)
-            sb.append(segment.value).append(":");
-        if (types.has(TYPE_MEMORY))
-            sb.append("[");
-        for (OperandObject object : objects) {
-            if(object.type == TYPE_SEGMENT)
-                continue;
-            if (object.type == TYPE_REGISTER) {
-                sb.append(object.value);
-            } else if (object.type == TYPE_CONSTANT) {
-                long value = (long) object.value;
-                if(object.label != null)
-                    sb.append(object.label);
-                else
-                    sb.append(String.format("0x%X", value));
-            }
-            sb.append(" + ");
-        }
-        // remove last " + "
-        sb.delete(sb.length() - 3, sb.length());
-        if (types.has(TYPE_MEMORY))
-            sb.append("]");
-        return sb.toString();
+        return ListingFormatter.DEFAULT.format(this, new StringBuilder()).toString();
     }
 
     @Override
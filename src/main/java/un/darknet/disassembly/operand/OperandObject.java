@@ -2,12 +2,12 @@ package un.darknet.disassembly.operand;
 
 import un.darknet.disassembly.labels.Label;
 
-import java.util.*;
+import java.util.Objects;
 
 public class OperandObject {
 
     // object pool
-    public static final List<OperandObject> pool = new ArrayList<>();
+    public static final OperandObjectPool pool = new OperandObjectPool();
     // objects can only have 1 type
     public int type;
     public Object value;
@@ -19,28 +19,30 @@ public class OperandObject {
         this.value = value;
     }
 
+    /**
+     * Pooled objects are shared, so labels must never be set on them directly.
+     *
+     * @param label the label this object references
+     * @return a private copy of this object referencing the label
+     */
+    public OperandObject withLabel(Label label) {
+        OperandObject obj = new OperandObject(type, value);
+        obj.label = label;
+        return obj;
+    }
+
     public static OperandObject forRegister(String register) {
-        return forObj(register, Operand.TYPE_REGISTER);
+        return pool.register(register);
     }
 
     public static OperandObject forImmediate(long value) {
-        return forObj(value, Operand.TYPE_CONSTANT);
+        return pool.immediate(value);
     }
 
-    public static OperandObject forSegment(String segment) { return forObj(segment, Operand.TYPE_SEGMENT); }
+    public static OperandObject forSegment(String segment) { return pool.segment(segment); }
 
     public static OperandObject forObj(Object value, int type) {
-
-        for (OperandObject obj : pool) {
-            if (obj.type == type && obj.value.equals(value)) {
-                return obj;
-            }
-        }
-
-        OperandObject obj = new OperandObject(type, value);
-        pool.add(obj);
-        return obj;
-
+        return pool.get(value, type);
     }
 
     @Override
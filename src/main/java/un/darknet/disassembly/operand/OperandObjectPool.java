@@ -0,0 +1,145 @@
+package un.darknet.disassembly.operand;
+
+import un.darknet.disassembly.X86.Constants;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Intern table for {@link OperandObject}s.
+ * Registers and segments are looked up in a fixed table which is built once.
+ * Immediates are cached in a bounded, direct-mapped table keyed by their primitive value,
+ * a colliding value simply evicts the previous entry. Far pointer selectors are segments with a numeric value
+ * and are cached the same way.
+ * The pool is safe to use from multiple threads.
+ */
+public class OperandObjectPool {
+
+    public static final int DEFAULT_IMMEDIATE_CAPACITY = 4096;
+    private static final int SELECTOR_CAPACITY = 256; // programs use few selectors
+
+    // shared by all pools, never changes after class initialization
+    private static final Map<String, OperandObject> REGISTERS = buildFixed(Operand.TYPE_REGISTER);
+    private static final Map<String, OperandObject> SEGMENTS = buildFixed(Operand.TYPE_SEGMENT);
+
+    private final AtomicReferenceArray<OperandObject> immediates;
+    private final int mask;
+    private final AtomicReferenceArray<OperandObject> selectors = new AtomicReferenceArray<>(SELECTOR_CAPACITY);
+
+    public OperandObjectPool() {
+        this(DEFAULT_IMMEDIATE_CAPACITY);
+    }
+
+    /**
+     * @param immediateCapacity maximum number of cached immediates, rounded up to a power of two
+     */
+    public OperandObjectPool(int immediateCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(1, immediateCapacity - 1) << 1);
+        this.immediates = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    private static Map<String, OperandObject> buildFixed(int type) {
+
+        Map<String, OperandObject> table = new HashMap<>();
+
+        if (type == Operand.TYPE_REGISTER) {
+            for (String[] registers : Constants.REGISTERS)
+                for (String register : registers)
+                    table.put(register, new OperandObject(type, register));
+        } else {
+            for (String segment : Constants.SEGMENTS)
+                table.put(segment, new OperandObject(type, segment));
+        }
+
+        return Collections.unmodifiableMap(table);
+
+    }
+
+    public OperandObject register(String register) {
+        OperandObject obj = REGISTERS.get(register);
+        return obj != null ? obj : new OperandObject(Operand.TYPE_REGISTER, register);
+    }
+
+    public OperandObject segment(String segment) {
+        OperandObject obj = SEGMENTS.get(segment);
+        return obj != null ? obj : new OperandObject(Operand.TYPE_SEGMENT, segment);
+    }
+
+    /**
+     * @param selector the 16-bit selector of a far pointer
+     * @return a segment object whose value is the selector as a Long
+     */
+    public OperandObject selector(int selector) {
+
+        long value = selector & 0xFFFF;
+        int slot = (int) value & (SELECTOR_CAPACITY - 1);
+        OperandObject obj = selectors.get(slot);
+
+        if (obj != null && (Long) obj.value == value)
+            return obj;
+
+        obj = new OperandObject(Operand.TYPE_SEGMENT, value);
+        selectors.set(slot, obj);
+        return obj;
+
+    }
+
+    public OperandObject immediate(long value) {
+
+        int slot = index(value);
+        OperandObject obj = immediates.get(slot);
+
+        if (obj != null && (Long) obj.value == value)
+            return obj;
+
+        obj = new OperandObject(Operand.TYPE_CONSTANT, value);
+        immediates.set(slot, obj); // evicts whatever was in the slot
+        return obj;
+
+    }
+
+    public OperandObject get(Object value, int type) {
+
+        switch (type) {
+            case Operand.TYPE_REGISTER:
+                if (value instanceof String) return register((String) value);
+                break;
+            case Operand.TYPE_SEGMENT:
+                if (value instanceof String) return segment((String) value);
+                if (value instanceof Long) return selector((int) (long) (Long) value);
+                break;
+            case Operand.TYPE_CONSTANT:
+                if (value instanceof Long) return immediate((Long) value);
+                break;
+        }
+
+        return new OperandObject(type, value);
+
+    }
+
+    /**
+     * @return the maximum number of cached immediates
+     */
+    public int capacity() {
+        return immediates.length();
+    }
+
+    /**
+     * Drops all cached immediates.
+     */
+    public void clear() {
+        for (int i = 0; i < immediates.length(); i++)
+            immediates.set(i, null);
+        for (int i = 0; i < selectors.length(); i++)
+            selectors.set(i, null);
+    }
+
+    private int index(long value) {
+        long h = value * 0x9E3779B97F4A7C15L; // fibonacci hashing spreads small and aligned values
+        return (int) (h >>> 32) & mask;
+    }
+
+}
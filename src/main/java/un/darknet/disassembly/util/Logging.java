@@ -1,47 +1,52 @@
 package un.darknet.disassembly.util;
 
+import org.slf4j.Logger;
 import un.darknet.disassembly.Disassembler;
 
-import java.util.logging.Logger;
-
+/**
+ * Shortcuts for the slf4j logger of the disassembler.
+ * Decoders do not log, they report to {@link un.darknet.disassembly.decoding.Diagnostics}.
+ */
 public class Logging {
 
-    public static final Logger LOGGER = Logger.getLogger(Disassembler.class.getName());
+    public static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(Disassembler.class);
 
     public static void log(String message) {
         LOGGER.info(message);
     }
 
     public static void log(String message, Throwable e) {
-        LOGGER.log(java.util.logging.Level.SEVERE, message, e);
+        LOGGER.error(message, e);
     }
 
     public static void log(Throwable e) {
-        LOGGER.log(java.util.logging.Level.SEVERE, null, e);
+        LOGGER.error(e.getMessage(), e);
     }
 
     public static void log(String message, Object... args) {
-        LOGGER.info(String.format(message, args));
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info(String.format(message, args));
     }
 
     public static void log(String message, Throwable e, Object... args) {
-        LOGGER.log(java.util.logging.Level.SEVERE, String.format(message, args), e);
+        LOGGER.error(String.format(message, args), e);
     }
 
     public static void warn(String message) {
-        LOGGER.warning(message);
+        LOGGER.warn(message);
     }
 
     public static void warn(String message, Throwable e) {
-        LOGGER.log(java.util.logging.Level.WARNING, message, e);
+        LOGGER.warn(message, e);
     }
 
     public static void warn(String message, Object... args) {
-        LOGGER.warning(String.format(message, args));
+        if (LOGGER.isWarnEnabled())
+            LOGGER.warn(String.format(message, args));
     }
 
     public static void warn(String message, Throwable e, Object... args) {
-        LOGGER.log(java.util.logging.Level.WARNING, String.format(message, args), e);
+        LOGGER.warn(String.format(message, args), e);
     }
 
 
@@ -0,0 +1,144 @@
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import un.darknet.disassembly.*;
+import un.darknet.disassembly.X86.X86Decoder;
+import un.darknet.disassembly.X86.X86Disassembler;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.Program;
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.input.ArrayByteSource;
+import un.darknet.disassembly.input.MappedByteSource;
+import un.darknet.disassembly.workload.WorkloadGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+public class AllocationTest {
+
+    /**
+     * Public APIs with their allocation budgets in allocation-baseline.properties.
+     * Every case prepares outside of the measurement and returns what is measured,
+     * which returns the number of instructions it decoded.
+     */
+    public static List<Arguments> getAllocationCases() {
+
+        byte[] code = new WorkloadGenerator(21).generate(1 << 20);
+        Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        X86Disassembler platform = (X86Disassembler) local.getBackend();
+
+        Map<String, Supplier<LongSupplier>> cases = new LinkedHashMap<>();
+
+        cases.put("disassemble", () -> () -> local.disassemble(code).length);
+        cases.put("visitor", () -> () -> local.disassemble(code, instruction -> true));
+        cases.put("iterator", () -> () -> {
+            long count = 0;
+            for (Iterator<Instruction> it = local.iterate(code); it.hasNext(); it.next())
+                count++;
+            return count;
+        });
+        cases.put("lazyOperands", () -> {
+            Disassembler lazy = new Disassembler(Architecture.X86, Endianness.LITTLE);
+            lazy.getOptions().setDecodeMode(DecodeMode.LAZY_OPERANDS);
+            return () -> lazy.disassemble(code, instruction -> true);
+        });
+        cases.put("lazyMapped", () -> {
+            Disassembler lazy = new Disassembler(Architecture.X86, Endianness.LITTLE);
+            lazy.getOptions().setDecodeMode(DecodeMode.LAZY_OPERANDS);
+            MappedByteSource source = mapped(code);
+            return () -> lazy.disassemble(source, instruction -> instruction.getOperands() != null);
+        });
+        cases.put("mnemonicOnly", () -> {
+            Disassembler mnemonics = new Disassembler(Architecture.X86, Endianness.LITTLE);
+            mnemonics.getOptions().setDecodeMode(DecodeMode.MNEMONIC_ONLY);
+            return () -> mnemonics.disassemble(code, instruction -> true);
+        });
+        cases.put("decoder", () -> {
+            X86Decoder decoder = platform.newDecoder(new ArrayByteSource(code), 0, code.length, new DisassemblyOptions());
+            return () -> {
+                long count = 0;
+                decoder.seek(0);
+                try {
+                    while (decoder.getPosition() < code.length) {
+                        decoder.decodeNext();
+                        count++;
+                    }
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                return count;
+            };
+        });
+        cases.put("resolveLabels", () -> {
+            Program program = Program.withInstructions(local.disassemble(code));
+            return () -> {
+                platform.resolveLabels(program);
+                return program.instructions.size();
+            };
+        });
+
+        List<Arguments> arguments = new ArrayList<>();
+        cases.forEach((api, workload) -> arguments.add(Arguments.of(api, workload)));
+
+        return arguments;
+
+    }
+
+    private static MappedByteSource mapped(byte[] code) {
+
+        try {
+            java.nio.file.Path file = Files.createTempFile("allocation", ".bin");
+            file.toFile().deleteOnExit();
+            Files.write(file, code);
+            return MappedByteSource.map(file);
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("getAllocationCases")
+    void testAllocationBudget(String api, Supplier<LongSupplier> workload) throws IOException {
+
+        Properties baseline = new Properties();
+        try (InputStream in = AllocationTest.class.getResourceAsStream("/allocation-baseline.properties")) {
+            baseline.load(in);
+        }
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // the smallest of a few runs, the first ones include class loading and compilation
+        double perInstruction = Double.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+
+            LongSupplier measured = workload.get();
+
+            long before = threads.getThreadAllocatedBytes(thread);
+            long instructions = measured.getAsLong();
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+            perInstruction = Math.min(perInstruction, (double) allocated / instructions);
+
+        }
+
+        double budget = Double.parseDouble(baseline.getProperty(api));
+        Assertions.assertTrue(perInstruction <= budget,
+                String.format("%s allocates %.1f bytes per instruction, the budget is %.1f", api, perInstruction, budget));
+
+    }
+
+}
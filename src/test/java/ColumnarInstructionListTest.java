@@ -0,0 +1,100 @@
+import org.junit.jupiter.api.*;
+import un.darknet.disassembly.*;
+import un.darknet.disassembly.data.ColumnarInstructionList;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.InvalidOpcode;
+import un.darknet.disassembly.data.Opcode;
+import un.darknet.disassembly.data.Program;
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.exception.InvalidInstructionException;
+import un.darknet.disassembly.operand.Operand;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ColumnarInstructionListTest {
+
+    @Test
+    public void testColumnarProgram() throws IOException, InvalidInstructionException {
+
+        byte[] code = {
+                0x70, 0x20, // JO 0x20
+                (byte) 0x81, 0x01, 0x10, 0x00, 0x00, 0x10, // ADD [ECX], 0x10000010
+                0x26, 0x03, 0x05, 0x56, 0x78, 0x56, 0x34, // ADD EAX, ES:[0x34567856]
+                (byte) 0x9A, 0x10, 0x10, 0x00, 0x00, (byte) 0x99, 0x00, // CALL 0x99:0x1010
+                (byte) 0x98 // CWDE
+        };
+
+        Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+
+        Program objects = Program.withCode(code);
+        local.getBackend().process(objects, 0, code.length);
+
+        Program columnar = Program.withColumnarCode(code);
+        local.getBackend().process(columnar, 0, code.length);
+
+        assertEquals(objects.instructions.toString(), columnar.instructions.toString());
+
+        ColumnarInstructionList list = (ColumnarInstructionList) columnar.instructions;
+        assertEquals(5, list.size());
+        assertEquals(9, list.getAddress(2)); // location after the segment prefix
+        assertEquals(6, list.getLength(2));
+        assertEquals("ADD", list.getMnemonic(2));
+        assertEquals(2, list.getOperandCount(2));
+
+        local.getBackend().resolveLabels(columnar);
+        assertEquals("JO label_00000022", columnar.instructions.get(0).toString());
+
+        // columns grow again after being trimmed, from any size
+        ColumnarInstructionList trimmed = new ColumnarInstructionList();
+        trimmed.trimToSize();
+        trimmed.add(objects.instructions.get(1));
+        trimmed.trimToSize();
+        for (Instruction instruction : objects.instructions)
+            trimmed.add(instruction);
+        assertEquals(6, trimmed.size());
+        assertEquals(objects.instructions.get(3).toString(), trimmed.get(4).toString());
+
+        // far pointer selectors are not names, any number of them fits
+        ColumnarInstructionList far = new ColumnarInstructionList();
+        byte[] call = {(byte) 0x9A, 0x10, 0x10, 0x00, 0x00, 0x00, 0x00};
+        for (int selector = 0; selector < 0x10000; selector++) {
+            call[5] = (byte) selector;
+            call[6] = (byte) (selector >> 8);
+            far.add(local.disassemble(call)[0]);
+        }
+        assertEquals("CALL 0xFFFF:0x1010", far.get(0xFFFF).toString());
+        assertEquals("CALL 0x0:0x1010", far.get(0).toString());
+
+        // mnemonic ids which do not fit the column are rejected instead of wrapped
+        Opcode wide = new Opcode() {
+            public String mnemonic() { return "WIDE"; }
+            public int mnemonicId() { return Short.MAX_VALUE + 1; }
+            public Operand[] operands() { return new Operand[0]; }
+            public long size() { return 1; }
+        };
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> far.add(new Instruction(0, wide, InstructionType.OTHER)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> far.set(0, new Instruction(0, wide, InstructionType.OTHER)));
+        assertEquals("CALL 0x0:0x1010", far.get(0).toString());
+
+        // lazy opcodes are kept without decoding their operands, invalid opcodes stay invalid
+        Disassembler lazy = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        lazy.getOptions().setDecodeMode(DecodeMode.LAZY_OPERANDS);
+        ColumnarInstructionList deferred = new ColumnarInstructionList();
+        for (Instruction instruction : lazy.disassemble(code))
+            deferred.add(instruction);
+        deferred.add(new Instruction(0x20, new InvalidOpcode(3), null));
+        for (int i = 0; i < 5; i++)
+            Assertions.assertFalse(deferred.get(i).opcode.isMaterialized());
+        Assertions.assertInstanceOf(InvalidOpcode.class, deferred.get(5).opcode);
+        Assertions.assertNull(deferred.getType(5));
+        assertEquals(3, deferred.getLength(5));
+        assertEquals(objects.instructions.toString(), deferred.subList(0, 5).toString());
+
+    }
+
+}
@@ -0,0 +1,380 @@
+import org.junit.jupiter.api.*;
+import un.darknet.disassembly.*;
+import un.darknet.disassembly.X86.DecodeProfile;
+import un.darknet.disassembly.X86.LazyOpcode;
+import un.darknet.disassembly.X86.MicroOps;
+import un.darknet.disassembly.X86.Operations;
+import un.darknet.disassembly.X86.X86Decoder;
+import un.darknet.disassembly.X86.X86Disassembler;
+import un.darknet.disassembly.X86.X86LengthDecoder;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.InvalidOpcode;
+import un.darknet.disassembly.data.Mnemonic;
+import un.darknet.disassembly.data.Opcode;
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.decoding.DecodeStatus;
+import un.darknet.disassembly.decoding.DecoderContext;
+import un.darknet.disassembly.exception.InvalidInstructionException;
+import un.darknet.disassembly.input.ArrayByteSource;
+import un.darknet.disassembly.input.MappedByteSource;
+import un.darknet.disassembly.operand.Operand;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DecoderTest {
+
+    static Disassembler disassembler;
+
+    @BeforeAll
+    static void setup() {
+
+        disassembler = new Disassembler(Architecture.X86, Endianness.LITTLE);
+
+    }
+
+    @Test
+    public void testReusedContext() throws IOException, InvalidInstructionException {
+
+        X86Decoder decoder = new X86Decoder(new Disassembler(Architecture.X86, Endianness.LITTLE).getBackend());
+        decoder.setReuseContext(true);
+
+        decoder.feed(new byte[] {(byte) 0x83, (byte) 0xc0, 0x10, 0x26, 0x03, 0x05, 0x56, 0x78, 0x56, 0x34, 0x40}, 0, 11);
+
+        DecoderContext first = decoder.next();
+        assertEquals("ADD EAX, 0x10", first.getInstruction().toString());
+
+        DecoderContext second = decoder.next();
+        Assertions.assertSame(first, second);
+        assertEquals("ADD EAX, ES:[0x34567856]", second.getInstruction().toString());
+
+        // flags and override of the previous instruction must not leak
+        assertEquals("INC EAX", decoder.next().getInstruction().toString());
+
+    }
+
+    @Test
+    public void testStreaming() {
+
+        Disassembler disassembler = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        byte[] code = {(byte) 0x83, (byte) 0xc0, 0x10, 0x26, 0x03, 0x05, 0x56, 0x78, 0x56, 0x34, 0x40, 0x0f};
+        Instruction[] expected = disassembler.disassemble(code);
+
+        List<String> visited = new ArrayList<>();
+        long count = disassembler.disassemble(code, instruction -> visited.add(instruction.toString()));
+        assertEquals(expected.length, count);
+
+        List<String> iterated = new ArrayList<>();
+        disassembler.iterate(code).forEachRemaining(instruction -> iterated.add(instruction.toString()));
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].toString(), visited.get(i));
+            assertEquals(expected[i].toString(), iterated.get(i));
+        }
+        assertEquals(expected.length, iterated.size());
+
+        // the visitor can stop early
+        assertEquals(3, disassembler.disassemble(code, instruction -> !instruction.getMnemonic().equals("inc")));
+
+    }
+
+    @Test
+    public void testMnemonicIds() {
+
+        Instruction[] insn = disassembler.disassemble(new byte[] {(byte) 0x83, (byte) 0xc0, 0x10, 0x70, 0x20});
+
+        assertEquals(Mnemonic.of("ADD").getId(), insn[0].getMnemonicId());
+        Assertions.assertSame(insn[0].getMnemonic(), insn[0].getMnemonic()); // no new string per call
+        assertEquals("add", insn[0].getMnemonic());
+        assertEquals(InstructionType.JUMP_RELATIVE, Mnemonic.get(insn[1].getMnemonicId()).getType());
+
+        // opcodes without a stored id are looked up, unknown names are not registered
+        int registered = Mnemonic.count();
+        Opcode custom = new Opcode() {
+            public String mnemonic() { return "custom"; }
+            public Operand[] operands() { return new Operand[0]; }
+            public long size() { return 1; }
+        };
+        assertEquals(Mnemonic.UNKNOWN.getId(), custom.mnemonicId());
+        Assertions.assertNull(Mnemonic.find("CUSTOM"));
+        assertEquals(registered, Mnemonic.count());
+
+        Opcode add = new Opcode() {
+            public String mnemonic() { return "add"; }
+            public Operand[] operands() { return new Operand[0]; }
+            public long size() { return 1; }
+        };
+        assertEquals(insn[0].getMnemonicId(), add.mnemonicId());
+
+    }
+
+    @Test
+    public void testMappedInput() throws IOException {
+
+        // large enough to refill the copy block of sources without a backing array
+        byte[] code = new byte[200_000];
+        new java.util.Random(7).nextBytes(code);
+
+        Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        java.nio.file.Path file = Files.createTempFile("disassembly", ".bin");
+
+        try {
+            Files.write(file, code);
+            try (MappedByteSource source = MappedByteSource.map(file)) {
+                assertEquals(Arrays.toString(local.disassemble(code)), Arrays.toString(local.disassemble(source)));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+    }
+
+    @Test
+    public void testLengthDecoder() throws IOException {
+
+        byte[] code = new byte[100_000];
+        new java.util.Random(13).nextBytes(code);
+
+        for (byte bits : new byte[] {Bits.BITS_16, Bits.BITS_32, Bits.BITS_64}) {
+
+            X86Disassembler platform = new X86Disassembler();
+            platform.setBits(bits);
+
+            X86Decoder full = platform.newDecoder(new ArrayByteSource(code), 0, code.length, new DisassemblyOptions());
+            X86LengthDecoder lengths = platform.newLengthDecoder(new ArrayByteSource(code), 0, code.length);
+
+            int[] boundaries = new int[code.length];
+            int count = platform.newLengthDecoder(new ArrayByteSource(code), 0, code.length).nextBoundaries(boundaries, 0, code.length);
+
+            int i = 0;
+            while (full.hasNext()) {
+                assertEquals(full.getPosition(), boundaries[i++], "bits " + bits);
+                long position = full.getPosition();
+                full.nextInstruction();
+                assertEquals(full.getPosition() - position, lengths.nextLength(), "bits " + bits + " at " + position);
+            }
+            assertEquals(i, count);
+            Assertions.assertFalse(lengths.hasNext());
+
+        }
+
+        // prefixes, displacements and immediates
+        byte[] mixed = {0x66, 0x26, (byte) 0x83, (byte) 0x84, 0x10, 0x01, 0x02, 0x03, 0x04, (byte) 0x8e, (byte) 0xf8, 0x63, (byte) 0x9a, 1, 2, 3, 4, 5, 6};
+        X86LengthDecoder decoder = new X86Disassembler().newLengthDecoder(new ArrayByteSource(mixed), 0, mixed.length);
+        assertEquals(9, decoder.nextLength());
+        assertEquals(2, decoder.nextLength()); // MOV to segment register 7 is invalid
+        assertEquals(1, decoder.nextLength()); // unhandled prefix
+        assertEquals(7, decoder.nextLength());
+
+    }
+
+    @Test
+    public void testDecodeModes() {
+
+        byte[] code = new byte[50_000];
+        new java.util.Random(17).nextBytes(code);
+
+        Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        local.setBits(Bits.BITS_64);
+        Instruction[] full = local.disassemble(code);
+
+        local.getOptions().setDecodeMode(DecodeMode.MNEMONIC_ONLY);
+        Instruction[] mnemonics = local.disassemble(code);
+
+        local.getOptions().setDecodeMode(DecodeMode.LAZY_OPERANDS);
+        Instruction[] lazy = local.disassemble(code);
+
+        assertEquals(full.length, mnemonics.length);
+        assertEquals(full.length, lazy.length);
+
+        for (int i = 0; i < full.length; i++) {
+            assertEquals(full[i].location, mnemonics[i].location);
+            assertEquals(full[i].getLength(), mnemonics[i].getLength());
+            assertEquals(full[i].getMnemonicId(), mnemonics[i].getMnemonicId(), "at " + full[i].location);
+            assertEquals(full[i].type, mnemonics[i].type);
+            assertEquals(0, mnemonics[i].getOperands().length);
+            assertEquals(full[i].toString(), lazy[i].toString());
+        }
+
+        // operands are only decoded when they are accessed
+        local.getOptions().setDecodeMode(DecodeMode.LAZY_OPERANDS);
+        Instruction add = local.disassemble(new byte[] {0x03, 0x05, 0x56, 0x78, 0x56, 0x34})[0];
+        Assertions.assertFalse(((LazyOpcode) add.opcode).isMaterialized());
+        assertEquals("add", add.getMnemonic());
+        Assertions.assertFalse(((LazyOpcode) add.opcode).isMaterialized());
+        assertEquals("ADD EAX, [0x34567856]", add.toString());
+        Assertions.assertTrue(((LazyOpcode) add.opcode).isMaterialized());
+
+    }
+
+    @Test
+    public void testGeneratedDecoder() {
+
+        Assertions.assertTrue(X86Disassembler.hasGeneratedDecoder());
+
+        byte[] code = new byte[100_000];
+        new java.util.Random(19).nextBytes(code);
+
+        for (byte bits : new byte[] {Bits.BITS_32, Bits.BITS_64}) {
+
+            Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+            local.setBits(bits);
+            X86Disassembler platform = (X86Disassembler) local.getBackend();
+
+            platform.setGeneratedDecoder(false);
+            Instruction[] interpreted = local.disassemble(code);
+            platform.setGeneratedDecoder(true);
+            Instruction[] generated = local.disassemble(code);
+
+            assertEquals(interpreted.length, generated.length);
+            for (int i = 0; i < interpreted.length; i++) {
+                assertEquals(interpreted[i].location, generated[i].location);
+                assertEquals(interpreted[i].toString(), generated[i].toString());
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testGeneratedDecoderSize() {
+
+        // HotSpot does not compile methods with 8000 bytes of bytecode or more (HugeMethodLimit)
+        java.util.spi.ToolProvider javap = java.util.spi.ToolProvider.findFirst("javap").orElseThrow(AssertionError::new);
+        java.io.StringWriter out = new java.io.StringWriter();
+        String decoder = X86Disassembler.class.getResource("GeneratedX86Decoder.class").toString();
+        assertEquals(0, javap.run(new java.io.PrintWriter(out), new java.io.PrintWriter(System.err), "-c", "-p", decoder));
+
+        // the offset of the last instruction of decodeOperands
+        int size = -1;
+        boolean method = false;
+        java.util.regex.Matcher offset = java.util.regex.Pattern.compile("^\\s+(\\d+): ").matcher("");
+        for (String line : out.toString().split("\\R")) {
+            if (line.contains(" decodeOperands("))
+                method = true;
+            else if (method && line.isEmpty())
+                break;
+            else if (method && offset.reset(line).find())
+                size = Integer.parseInt(offset.group(1));
+        }
+
+        Assertions.assertTrue(size > 0, "No decodeOperands in " + decoder);
+        Assertions.assertTrue(size < 8000, "decodeOperands has " + size + " bytes of bytecode");
+
+    }
+
+    @Test
+    public void testDecodeStatus() throws IOException {
+
+        X86Decoder decoder = new X86Decoder(new Disassembler(Architecture.X86, Endianness.LITTLE).getBackend());
+        decoder.setReuseContext(true);
+
+        // mov with the fs and ds prefixes combined into no segment register, nop, truncated add
+        decoder.feed(new byte[] {0x64, 0x3e, (byte) 0x8b, 0x00, (byte) 0x90, (byte) 0x81, 0x01}, 0, 7);
+
+        DecoderContext ctx = decoder.decodeNext();
+        assertEquals(DecodeStatus.INVALID_SEGMENT, ctx.getStatus());
+        assertEquals(0, ctx.getInstruction().location);
+        assertEquals(4, ctx.getInstruction().getLength());
+        Assertions.assertTrue(ctx.getInstruction().opcode instanceof InvalidOpcode);
+
+        ctx = decoder.decodeNext();
+        Assertions.assertTrue(ctx.isValid());
+        assertEquals("NOP", ctx.getInstruction().toString());
+
+        ctx = decoder.decodeNext();
+        assertEquals(DecodeStatus.TRUNCATED, ctx.getStatus());
+        assertEquals(5, ctx.getInstruction().location);
+        assertEquals(2, ctx.getInstruction().getLength());
+
+        decoder.seek(0);
+        InvalidInstructionException e = Assertions.assertThrows(InvalidInstructionException.class, decoder::next);
+        assertEquals(DecodeStatus.INVALID_SEGMENT, e.getStatus());
+        assertEquals(0, e.getStackTrace().length);
+        assertEquals("Invalid instruction at 0x0: ???", e.getMessage());
+
+    }
+
+    @Test
+    public void testDecodeProfile() throws IOException {
+
+        X86Decoder decoder = new X86Decoder(disassembler.getBackend());
+        DecodeProfile profile = new DecodeProfile(1);
+        decoder.setProfile(profile);
+
+        // add bx, ax; nop; nop; add ebx, eax
+        decoder.feed(new byte[] {0x66, 0x01, (byte) 0xc3, (byte) 0x90, (byte) 0x90, 0x01, (byte) 0xc3}, 0, 7);
+        while (decoder.getPosition() < 7)
+            decoder.nextInstruction();
+
+        List<DecodeProfile.Entry> entries = profile.entries();
+        assertEquals(3, entries.size());
+        assertEquals(4, profile.getDecodes());
+
+        for (DecodeProfile.Entry entry : entries) {
+            switch (entry.getOpcode()) {
+                case 0x90:
+                    assertEquals(2, entry.getCount());
+                    assertEquals(2, entry.getBytes());
+                    break;
+                case 0x01:
+                    assertEquals(1, entry.getCount());
+                    assertEquals(2, entry.getOperandsDecoded());
+                    assertEquals(entry.getPrefixes() == Operations.PREFIX_OPERAND ? 3 : 2, entry.getBytes());
+                    break;
+                default:
+                    Assertions.fail("Unexpected opcode " + entry.getOpcode());
+            }
+        }
+
+        Assertions.assertTrue(profile.report().contains("ADD"));
+
+        // mov ax, es: the operation string sets the operand size flag, but there is no 66 prefix
+        profile.reset();
+        decoder.feed(new byte[] {(byte) 0x8c, (byte) 0xc0}, 0, 2);
+        decoder.nextInstruction();
+
+        DecodeProfile.Entry mov = profile.entries().get(0);
+        assertEquals(0x8c, mov.getOpcode());
+        assertEquals(0, mov.getPrefixes());
+        assertEquals("-", mov.getPrefixNames());
+        assertEquals(2, mov.getOperandsDecoded());
+
+    }
+
+    @Test
+    public void testPrefixLimit() {
+
+        byte[] code = new byte[20];
+        Arrays.fill(code, (byte) 0x66);
+        code[code.length - 1] = (byte) 0x90;
+
+        Instruction[] insn = new Disassembler(Architecture.X86, Endianness.LITTLE).disassemble(code);
+
+        assertEquals("???", insn[0].toString());
+
+    }
+
+    @Test
+    public void testMicroOpCompile() {
+
+        int[] program = MicroOps.compile(0x83, "4F0OR");
+
+        assertEquals(3, program.length);
+        assertEquals(MicroOps.FLAG, MicroOps.code(program[0]));
+        assertEquals(3, MicroOps.arg(program[0])); // 4th decoder flag
+        assertEquals(MicroOps.OVERRIDE, MicroOps.code(program[1]));
+        assertEquals(0, MicroOps.arg(program[1]));
+        assertEquals(MicroOps.REGRM, MicroOps.code(program[2]));
+
+        Assertions.assertArrayEquals(MicroOps.EMPTY, MicroOps.compile(0x90, ""));
+
+    }
+
+}
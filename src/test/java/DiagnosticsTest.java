@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.*;
+import un.darknet.disassembly.*;
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.decoding.Diagnostics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DiagnosticsTest {
+
+    @Test
+    public void testDiagnostics() {
+
+        Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        Diagnostics diagnostics = new Diagnostics();
+        local.getOptions().setDiagnostics(diagnostics);
+
+        // unhandled prefix, invalid segment twice, nop, truncated add
+        byte[] code = {0x63, 0x64, 0x3e, (byte) 0x8b, 0x00, 0x64, 0x3e, (byte) 0x8b, 0x00, (byte) 0x90, (byte) 0x81, 0x01};
+        local.disassemble(code);
+
+        assertEquals(1, diagnostics.count(Diagnostics.Reason.UNHANDLED_PREFIX, 0x63));
+        assertEquals(2, diagnostics.count(Diagnostics.Reason.INVALID_SEGMENT, 0x8b));
+        assertEquals(1, diagnostics.count(Diagnostics.Reason.TRUNCATED));
+        assertEquals(4, diagnostics.total());
+        Assertions.assertTrue(diagnostics.summary().contains("INVALID_SEGMENT"));
+
+        // the length decoder reports the same problems in every mode
+        for (DecodeMode mode : new DecodeMode[] {DecodeMode.MNEMONIC_ONLY, DecodeMode.LAZY_OPERANDS}) {
+            diagnostics.reset();
+            local.getOptions().setDecodeMode(mode);
+            local.disassemble(code);
+
+            assertEquals(1, diagnostics.count(Diagnostics.Reason.UNHANDLED_PREFIX, 0x63), mode.name());
+            assertEquals(2, diagnostics.count(Diagnostics.Reason.INVALID_SEGMENT, 0x8b), mode.name());
+            assertEquals(1, diagnostics.count(Diagnostics.Reason.TRUNCATED), mode.name());
+            assertEquals(4, diagnostics.total(), mode.name());
+        }
+
+        // counts of a session without reports read as zero, the no-op sink never counts
+        Diagnostics unused = new Diagnostics();
+        assertEquals(0, unused.total());
+        assertEquals(0, unused.count(Diagnostics.Reason.INVALID, 0x8b));
+        unused.reset();
+        Diagnostics.NONE.report(Diagnostics.Reason.INVALID, 0x8b, 0);
+        assertEquals(0, Diagnostics.NONE.total());
+
+        // sessions count separately by default
+        Disassembler other = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        other.disassemble(code);
+        Assertions.assertNotSame(diagnostics, other.getOptions().getDiagnostics());
+        assertEquals(4, other.getOptions().getDiagnostics().total());
+        assertEquals(4, diagnostics.total());
+
+    }
+
+}
@@ -0,0 +1,142 @@
+import org.junit.jupiter.api.*;
+import un.darknet.disassembly.*;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.Program;
+import un.darknet.disassembly.exception.InvalidInstructionException;
+import un.darknet.disassembly.labels.CrossReferences;
+import un.darknet.disassembly.labels.Label;
+import un.darknet.disassembly.labels.LabelScheme;
+import un.darknet.disassembly.labels.LabelTable;
+import un.darknet.disassembly.labels.LabelType;
+import un.darknet.disassembly.operand.Operand;
+import un.darknet.disassembly.operand.OperandObject;
+import un.darknet.disassembly.workload.WorkloadGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LabelTest {
+
+    static Disassembler disassembler;
+
+    @BeforeAll
+    static void setup() {
+
+        disassembler = new Disassembler(Architecture.X86, Endianness.LITTLE);
+
+    }
+
+    @Test
+    public void testLabelTargets() throws IOException, InvalidInstructionException {
+
+        byte[] code = new WorkloadGenerator(24).generate(100_000);
+        Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+
+        Program resolved = Program.withInstructions(local.disassemble(code));
+        local.getBackend().resolveLabels(resolved);
+
+        Program decoded = Program.withCode(code);
+        decoded.getOptions().setLabelTargets(true);
+        local.getBackend().process(decoded, 0, code.length);
+
+        assertEquals(resolved.instructions.toString(), decoded.instructions.toString());
+        assertEquals(resolved.getLabels().keySet(), decoded.getLabels().keySet());
+
+        // only branches and calls have targets
+        for (Label label : decoded.getLabels().values())
+            Assertions.assertTrue(label.type == LabelType.LABEL || label.type == LabelType.FUNCTION, label.toString());
+        Assertions.assertNull(disassembler.disassemble(new byte[] {(byte) 0x83, (byte) 0xc0, 0x10})[0].getOperands()[1].getObjects()[0].label);
+
+        // resolving again keeps the labels
+        assertEquals(decoded.getLabels().size(), local.getBackend().resolveLabels(decoded).size());
+
+        LabelTable table = new LabelTable();
+        Map<Long, Label> expected = new java.util.HashMap<>();
+        for (long address = 0; address < 10_000; address += 3) {
+            Label label = table.label(address << 12, LabelType.LABEL, LabelScheme.ADDRESS);
+            expected.put(address << 12, label);
+            Assertions.assertSame(label, table.label(address << 12, LabelType.FUNCTION, LabelScheme.ADDRESS));
+        }
+        assertEquals(expected, table);
+        Assertions.assertNull(table.get(1L));
+        assertEquals("label_00003000", table.get(0x3000L).getName());
+
+    }
+
+    @Test
+    public void testCrossReferences() throws IOException, InvalidInstructionException {
+
+        byte[] code = {
+                0x70, 0x0b, // JO 13
+                0x70, 0x09, // JO 13
+                (byte) 0x9A, 0x02, 0x00, 0x00, 0x00, (byte) 0x99, 0x00, // CALL 0x99:0x2
+                (byte) 0x90, (byte) 0x90, (byte) 0x90 // NOP
+        };
+
+        Program program = Program.withInstructions(disassembler.disassemble(code));
+        disassembler.getBackend().resolveLabels(program);
+        disassembler.getBackend().resolveLabels(program); // references are not counted twice
+
+        CrossReferences references = program.getLabels().getReferences();
+        assertEquals(3, references.size());
+        assertEquals("[0, 2]", Arrays.toString(references.referencesTo(13)));
+        assertEquals("[4]", Arrays.toString(references.referencesTo(2)));
+        assertEquals(0, references.countReferencesTo(11));
+        assertEquals("[13, 13]", Arrays.toString(references.referencesFrom(0, 4)));
+        assertEquals("[13, 2]", Arrays.toString(references.referencesFrom(2, 12)));
+        assertEquals(0, references.countReferencesFrom(5, 100));
+
+        Label target = program.getLabels().get(13);
+        assertEquals(2, target.references.length);
+        Assertions.assertSame(program.instructions.get(1), target.references[1]);
+
+        // the same index when labelling while decoding, checked against a scan over all instructions
+        byte[] workload = new WorkloadGenerator(25).generate(100_000);
+        Program decoded = Program.withCode(workload);
+        decoded.getOptions().setLabelTargets(true);
+        new Disassembler(Architecture.X86, Endianness.LITTLE).getBackend().process(decoded, 0, workload.length);
+
+        references = decoded.getLabels().getReferences();
+        Map<Label, List<Long>> sources = new HashMap<>();
+        for (Instruction instruction : decoded.instructions)
+            for (Operand operand : instruction.getOperands())
+                for (OperandObject object : operand.getObjects())
+                    if (object.label != null)
+                        sources.computeIfAbsent(object.label, k -> new ArrayList<>()).add(instruction.location);
+        for (Label label : decoded.getLabels().values()) {
+            List<Long> expected = sources.getOrDefault(label, new ArrayList<>());
+            assertEquals(expected.toString(), Arrays.toString(references.referencesTo(label.address)));
+            assertEquals(expected.size(), label.references.length);
+        }
+        assertEquals(references.size(), references.countReferencesFrom(0, workload.length));
+
+        // references recorded out of address order, with sources close together and far apart
+        for (long base : new long[] {0, Long.MAX_VALUE / 2}) {
+
+            LabelTable table = new LabelTable();
+            Label a = table.label(base + 100, LabelType.LABEL, LabelScheme.getGlobalScheme());
+            Label b = table.label(base + 200, LabelType.LABEL, LabelScheme.getGlobalScheme());
+            long[] locations = {base + 30, base + 10, base + 20, base + 10, base + (base == 0 ? 5 : -base)};
+
+            for (int i = 0; i < locations.length; i++)
+                table.reference(i % 2 == 0 ? a : b, new Instruction(locations[i], program.instructions.get(0).opcode, null));
+
+            CrossReferences index = table.getReferences();
+            long first = locations[4];
+            assertEquals("[" + first + ", " + (base + 20) + ", " + (base + 30) + "]", Arrays.toString(index.referencesTo(base + 100)));
+            assertEquals("[" + (base + 10) + ", " + (base + 10) + "]", Arrays.toString(index.referencesTo(base + 200)));
+            Assertions.assertSame(a, table.get(base + 100));
+            assertEquals(base + 10, b.references[0].location);
+            assertEquals(2, index.countReferencesFrom(base + 10, base + 11));
+
+        }
+
+    }
+
+}
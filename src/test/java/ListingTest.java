@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.*;
+import un.darknet.disassembly.*;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.Program;
+import un.darknet.disassembly.exception.InvalidInstructionException;
+import un.darknet.disassembly.input.ArrayByteSource;
+import un.darknet.disassembly.listing.ListingExport;
+import un.darknet.disassembly.listing.ListingFormatter;
+import un.darknet.disassembly.workload.WorkloadGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ListingTest {
+
+    @Test
+    public void testListingFormatter() throws IOException, InvalidInstructionException {
+
+        byte[] code = {0x26, 0x03, 0x05, 0x56, 0x78, 0x56, 0x34, (byte) 0x90, (byte) 0x81, (byte) 0xc0, 0x10, 0x00, 0x00, 0x00};
+        Instruction[] insn = new Disassembler(Architecture.X86, Endianness.LITTLE).disassemble(code);
+
+        ListingFormatter formatter = new ListingFormatter();
+        formatter.setAddresses(true);
+        formatter.setBase(0x401000);
+        formatter.setBytes(new ArrayByteSource(code), 4);
+
+        StringBuilder listing = formatter.format(Arrays.asList(insn), new StringBuilder());
+        assertEquals(
+                "00401001  03 05 56 78+ ADD EAX, ES:[0x34567856]\n" +
+                "00401007  90           NOP\n" +
+                "00401008  81 C0 10 00+ ADD EAX, 0x10\n", listing.toString());
+
+        // locations are relative to the offset the code was decoded from
+        byte[] padded = new byte[code.length + 3];
+        System.arraycopy(code, 0, padded, 3, code.length);
+        Program program = Program.withCode(padded);
+        new Disassembler(Architecture.X86, Endianness.LITTLE).getBackend().process(program, 3, code.length);
+        formatter.setBytes(new ArrayByteSource(padded), 3, 4);
+        assertEquals(listing.toString(), formatter.format(program.getInstructions(), new StringBuilder()).toString());
+
+        java.nio.CharBuffer buffer = java.nio.CharBuffer.allocate(64);
+        ListingFormatter.DEFAULT.format(insn[0], buffer);
+        assertEquals(insn[0].toString(), buffer.flip().toString());
+
+        // the same text as toString on every instruction of a corpus
+        for (Instruction instruction : new Disassembler(Architecture.X86, Endianness.LITTLE).disassemble(new WorkloadGenerator(22).generate(20_000)))
+            assertEquals(instruction.toString(), ListingFormatter.DEFAULT.format(instruction, new StringBuilder()).toString());
+
+    }
+
+    @Test
+    public void testListingExport() throws IOException {
+
+        byte[] code = new WorkloadGenerator(23).generate(200_000);
+        Program program = Program.withInstructions(new Disassembler(Architecture.X86, Endianness.LITTLE).disassemble(code));
+
+        ListingFormatter formatter = new ListingFormatter();
+        formatter.setAddresses(true);
+        formatter.setBytes(new ArrayByteSource(code), 6);
+        String expected = formatter.format(program.getInstructions(), new StringBuilder()).toString();
+
+        ListingExport export = new ListingExport(formatter);
+        export.setRangeSize(1000);
+        java.nio.file.Path file = Files.createTempFile("listing", ".txt");
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int window : new int[] {1, 3, 0}) {
+                export.setWindow(window);
+                assertEquals(expected.length(), export.export(program, file, pool));
+                assertEquals(expected, new String(Files.readAllBytes(file), java.nio.charset.StandardCharsets.UTF_8));
+            }
+
+            // a single range, its buffer starts below the estimate and grows
+            export.setRangeSize(Integer.MAX_VALUE);
+            export.setWindow(1);
+            assertEquals(expected.length(), export.export(program, file, pool));
+            assertEquals(expected, new String(Files.readAllBytes(file), java.nio.charset.StandardCharsets.UTF_8));
+
+            assertEquals(0, export.export(Program.withInstructions(), file, pool));
+        } finally {
+            pool.shutdown();
+            Files.deleteIfExists(file);
+        }
+
+    }
+
+}
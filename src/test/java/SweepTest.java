@@ -0,0 +1,152 @@
+import org.junit.jupiter.api.*;
+import un.darknet.disassembly.*;
+import un.darknet.disassembly.X86.LazyOpcode;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.Program;
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.decoding.Diagnostics;
+import un.darknet.disassembly.input.ArrayByteSource;
+import un.darknet.disassembly.labels.LabelScheme;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SweepTest {
+
+    @Test
+    public void testConcurrentDisassembly() throws Exception {
+
+        Disassembler shared = new Disassembler(Architecture.X86, Endianness.LITTLE);
+
+        byte[] code = {
+                0x70, 0x20, // JO 0x20
+                (byte) 0x81, 0x01, 0x10, 0x00, 0x00, 0x10, // ADD [ECX], 0x10000010
+                0x26, 0x03, 0x05, 0x56, 0x78, 0x56, 0x34, // ADD EAX, ES:[0x34567856]
+                (byte) 0x9A, 0x10, 0x10, 0x00, 0x00, (byte) 0x99, 0x00 // CALL 0x99:0x1010
+        };
+
+        String expected = Arrays.toString(shared.disassemble(code));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                LabelScheme scheme = i % 2 == 0 ? LabelScheme.ADDRESS : LabelScheme.FRIENDLY;
+                results.add(executor.submit(() -> {
+                    Program program = Program.withInstructions(shared.disassemble(code));
+                    program.getOptions().setLabelScheme(scheme);
+                    shared.getBackend().resolveLabels(program);
+                    return Arrays.toString(shared.disassemble(code)); // a fresh listing never sees labels
+                }));
+            }
+            for (Future<String> result : results)
+                assertEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testParallelSweep() {
+
+        byte[] code = new byte[100_000];
+        new java.util.Random(11).nextBytes(code);
+
+        Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        Instruction[] expected = local.disassemble(code);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize : new int[] {1, 7, 1000, 4096, code.length, code.length * 2}) {
+                local.getOptions().setChunkSize(chunkSize);
+                Instruction[] parallel = local.disassembleParallel(new ArrayByteSource(code), pool);
+                assertEquals(expected.length, parallel.length, "chunk size " + chunkSize);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i].location, parallel[i].location);
+                    assertEquals(expected[i].toString(), parallel[i].toString());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(0, local.disassembleParallel(new byte[0]).length);
+
+        // bytes decoded from a chunk start and discarded later are not counted
+        Diagnostics diagnostics = new Diagnostics();
+        local.getOptions().setDiagnostics(diagnostics);
+        local.disassemble(code);
+        long[] sequential = new long[Diagnostics.Reason.values().length];
+        for (Diagnostics.Reason reason : Diagnostics.Reason.values())
+            sequential[reason.ordinal()] = diagnostics.count(reason);
+        Assertions.assertTrue(diagnostics.total() > 0);
+
+        for (int chunkSize : new int[] {7, 1000, code.length}) {
+            diagnostics.reset();
+            local.getOptions().setChunkSize(chunkSize);
+            local.disassembleParallel(code);
+            for (Diagnostics.Reason reason : Diagnostics.Reason.values())
+                assertEquals(sequential[reason.ordinal()], diagnostics.count(reason), reason + ", chunk size " + chunkSize);
+        }
+
+    }
+
+    @Test
+    public void testRecursiveDescent() {
+
+        byte[] code = {
+                0x74, 0x04,                   // 0x00 JZ 0x06
+                0x40,                         // 0x02 INC EAX
+                (byte) 0xc3,                  // 0x03 RET
+                0x48,                         // 0x04 DEC EAX, only reached backwards
+                (byte) 0xc3,                  // 0x05 RET
+                0x48,                         // 0x06 DEC EAX
+                0x70, (byte) 0xfb,            // 0x07 JO 0x04
+                (byte) 0x9a, 0x12, 0x00, 0x00, 0x00, 0x00, 0x00, // 0x09 CALL 0x0:0x12
+                (byte) 0xc3,                  // 0x10 RET
+                (byte) 0xff,                  // 0x11 data
+                0x40, 0x40,                   // 0x12 INC EAX, INC EAX
+                0x74, (byte) 0xea,            // 0x14 JZ 0x00, decoded already
+                0x74, (byte) 0x80,            // 0x16 JZ -0x68, outside of the code
+                (byte) 0xc3                   // 0x18 RET
+        };
+
+        Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+        Instruction[] insn = local.disassembleRecursive(code, 0);
+
+        long[] locations = Arrays.stream(insn).mapToLong(i -> i.location).toArray();
+        Assertions.assertArrayEquals(new long[] {0x00, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x09, 0x10, 0x12, 0x13, 0x14, 0x16, 0x18}, locations);
+        assertEquals(InstructionType.RETURN, insn[2].type);
+
+        // targets are taken from the length tables when operands are lazy or not decoded
+        for (DecodeMode mode : new DecodeMode[] {DecodeMode.LAZY_OPERANDS, DecodeMode.MNEMONIC_ONLY}) {
+            Disassembler lengths = new Disassembler(Architecture.X86, Endianness.LITTLE);
+            lengths.getOptions().setDecodeMode(mode);
+            Instruction[] found = lengths.disassembleRecursive(code, 0);
+            Assertions.assertArrayEquals(locations, Arrays.stream(found).mapToLong(i -> i.location).toArray(), mode.name());
+            for (Instruction instruction : found)
+                if (instruction.opcode instanceof LazyOpcode)
+                    Assertions.assertFalse(((LazyOpcode) instruction.opcode).isMaterialized(), mode.name());
+        }
+
+        // the same positions are decoded from overlapping entry points, on a pool
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Instruction[] twice = local.disassembleRecursive(new ArrayByteSource(code), pool, 0x12, 0, 0x12, 0x09, -1, 0x1000);
+            assertEquals(Arrays.toString(insn), Arrays.toString(twice));
+        } finally {
+            pool.shutdown();
+        }
+
+    }
+
+}
@@ -1,5 +1,7 @@
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import un.darknet.disassembly.operand.OperandObject;
+import un.darknet.disassembly.operand.OperandObjectPool;
 import un.darknet.disassembly.util.NumberHelper;
 
 public class UtilityTester {
@@ -12,4 +14,25 @@ public class UtilityTester {
 
     }
 
+    @Test
+    public void testOperandPool() {
+
+        OperandObjectPool pool = new OperandObjectPool(16);
+
+        Assertions.assertEquals(16, pool.capacity());
+        Assertions.assertSame(pool.register("EAX"), pool.register("EAX"));
+        Assertions.assertSame(OperandObject.forRegister("EAX"), pool.register("EAX")); // fixed table is shared
+        Assertions.assertSame(pool.segment("ES"), pool.segment("ES"));
+        Assertions.assertSame(pool.immediate(0x10), pool.immediate(0x10));
+        Assertions.assertSame(pool.selector(0x99), pool.selector(0x99));
+        Assertions.assertEquals(0xFFFFL, pool.selector(0xFFFF).value); // far pointer selectors are numbers
+
+        // the immediate table never grows past its capacity
+        for (long i = 0; i < 1000; i++)
+            Assertions.assertEquals(i, (long) pool.immediate(i).value);
+
+        Assertions.assertEquals(16, pool.capacity());
+
+    }
+
 }
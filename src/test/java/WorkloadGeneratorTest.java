@@ -0,0 +1,73 @@
+import org.junit.jupiter.api.*;
+import un.darknet.disassembly.*;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.Mnemonic;
+import un.darknet.disassembly.workload.WorkloadGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WorkloadGeneratorTest {
+
+    @Test
+    public void testWorkloadGenerator() throws IOException {
+
+        WorkloadGenerator generator = new WorkloadGenerator(42);
+        byte[] code = generator.generate(200_000);
+
+        assertEquals(200_000, code.length);
+        Assertions.assertArrayEquals(code, new WorkloadGenerator(42).generate(200_000));
+        Assertions.assertFalse(Arrays.equals(code, new WorkloadGenerator(43).generate(200_000)));
+
+        java.nio.file.Path file = Files.createTempFile("workload", ".bin");
+        try {
+            generator.generate(file, code.length);
+            Assertions.assertArrayEquals(code, Files.readAllBytes(file));
+        } finally {
+            Files.delete(file);
+        }
+
+        // without data islands every instruction is valid
+        for (byte bits : new byte[] {Bits.BITS_32, Bits.BITS_64}) {
+
+            generator.setBits(bits);
+            generator.setDataIslandRate(0);
+
+            Disassembler local = new Disassembler(Architecture.X86, Endianness.LITTLE);
+            local.setBits(bits);
+
+            long branches = 0;
+            for (Instruction instruction : local.disassemble(generator.generate(100_000))) {
+                Assertions.assertNotEquals(Mnemonic.INVALID.getId(), instruction.getMnemonicId(), instruction::toString);
+                if (instruction.type == InstructionType.JUMP_RELATIVE) branches++;
+            }
+
+            Assertions.assertTrue(branches > 0);
+
+        }
+
+    }
+
+    @Test
+    public void testTargetsPastIntRange() {
+
+        WorkloadGenerator.Targets targets = new WorkloadGenerator.Targets();
+        assertEquals(0, targets.size());
+
+        // as after about 5 GB of generated code
+        targets.count = Integer.MAX_VALUE - 10;
+        for (long position = 0; position < 200; position++)
+            targets.add(position);
+
+        Assertions.assertTrue(targets.count > Integer.MAX_VALUE);
+        assertEquals(64, targets.size());
+        for (int back = 0; back < targets.size(); back++)
+            assertEquals(199 - back, targets.get(back));
+
+    }
+
+}
@@ -17,11 +17,9 @@ import un.darknet.disassembly.util.Bytes;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static un.darknet.disassembly.operand.Operand.*;
@@ -109,7 +107,6 @@ public class X86Test {
 
     }
 
-
     public static List<Arguments> getAllRegRMInstructions() {
 
         return Arrays.asList(
@@ -214,7 +211,6 @@ public class X86Test {
                 Arguments.of(0x7e, "JLE"),
                 Arguments.of(0x7f, "JNLE"));
 
-
     }
 
     @Test
@@ -377,7 +373,6 @@ public class X86Test {
                 (byte) 0x81, 0x01, 0x10, 0x00, 0x00, 0x10, // ADD [ECX], 0x10000010
                 (byte) 0x83, (byte) 0xc0, 0x10, // ADD EAX, 0x10
 
-
         };
 
         String[] expected = {
@@ -519,11 +514,8 @@ public class X86Test {
 
         common(new byte[]{(byte)opcode}, new String[]{expected});
 
-
     }
 
-
-
     @Test
     public void testLEA() {
 
@@ -566,6 +558,20 @@ public class X86Test {
 
         assertEquals(insn[0].toString(), "JO label_00000022");
 
+        // displacements are signed
+        Program backwards = Program.withInstructions(disassembler.disassemble(new byte[] {0x40, 0x70, (byte) 0xfd}));
+        disassembler.getBackend().resolveLabels(backwards);
+        assertEquals("JO label_00000000", backwards.instructions.get(1).toString());
+
+    }
+
+    @Test
+    public void testTruncatedInstruction() {
+
+        common(new int[] {0x90, 0x81, 0x01, 0x10}, new String[] {"NOP", "???"});
+
+        Instruction[] insn = disassembler.disassemble(new byte[] {(byte) 0x81, 0x01, 0x10});
+        assertEquals(3, insn[0].getLength());
 
     }
 
@@ -617,5 +623,4 @@ public class X86Test {
 
     }
 
-
 }
@@ -0,0 +1,498 @@
+package un.darknet.disassembly.workload;
+
+import un.darknet.disassembly.Architecture;
+import un.darknet.disassembly.Bits;
+import un.darknet.disassembly.Disassembler;
+import un.darknet.disassembly.Endianness;
+import un.darknet.disassembly.X86.MicroOps;
+import un.darknet.disassembly.X86.X86Disassembler;
+import un.darknet.disassembly.X86.X86LengthDecoder;
+import un.darknet.disassembly.data.Instruction;
+import un.darknet.disassembly.data.InstructionType;
+import un.darknet.disassembly.data.Mnemonic;
+import un.darknet.disassembly.decoding.DecodeMode;
+import un.darknet.disassembly.input.ArrayByteSource;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static un.darknet.disassembly.X86.Mnemonics.MNEMONIC_IDS;
+import static un.darknet.disassembly.X86.Mnemonics.PREFIX_ID;
+
+/**
+ * Generates x86 code for benchmarks and stress tests.
+ * <p>
+ * The output is a stream of instructions the decoder supports, picked by a weighted mix of {@link Category categories},
+ * with optional prefixes and REX prefixes, interleaved with data islands. Every instruction is checked with the
+ * {@link X86LengthDecoder}, so outside of data islands the stream decodes without invalid instructions.
+ * Relative jumps mostly target instructions generated shortly before.
+ * <p>
+ * The output only depends on the seed and the settings, not on how it is written,
+ * so the same corpus can be generated on every machine at any size from kilobytes to gigabytes.
+ */
+public class WorkloadGenerator {
+
+    private static final int MAX_INSTRUCTION_LENGTH = 15;
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int TARGETS = 64; // recent instruction starts jumps can target, a power of two
+    private static final int[] LEGACY_PREFIXES = {0x66, 0x67, 0x26, 0x2e, 0x36, 0x3e, 0x64, 0x65, 0xf0, 0xf2, 0xf3};
+
+    private final long seed;
+    private byte bits = Bits.BITS_32;
+    private final Map<Category, Integer> mix = new EnumMap<>(Category.class);
+    private double prefixRate = 0.1;
+    private double rexRate = 0.3;
+    private double dataIslandRate = 0.002;
+    private int minDataIsland = 16;
+    private int maxDataIsland = 512;
+
+    /**
+     * Kinds of instructions, by what follows the opcode.
+     */
+    public enum Category {
+
+        /**
+         * No operand bytes, e.g. {@code NOP} or {@code INC EAX}.
+         */
+        PLAIN,
+
+        /**
+         * A ModRM byte and its displacement, maybe followed by an immediate.
+         */
+        MODRM,
+
+        /**
+         * An immediate or a far pointer.
+         */
+        IMMEDIATE,
+
+        /**
+         * Relative jumps.
+         */
+        BRANCH
+
+    }
+
+    public WorkloadGenerator(long seed) {
+
+        this.seed = seed;
+
+        mix.put(Category.PLAIN, 20);
+        mix.put(Category.MODRM, 50);
+        mix.put(Category.IMMEDIATE, 20);
+        mix.put(Category.BRANCH, 10);
+
+    }
+
+    /**
+     * Writes a corpus file: {@code <file> <size> [seed] [bits]}, the size may end with K, M or G.
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2)
+            throw new IllegalArgumentException("Usage: WorkloadGenerator <file> <size> [seed] [bits]");
+
+        WorkloadGenerator generator = new WorkloadGenerator(args.length > 2 ? Long.parseLong(args[2]) : 0);
+        if (args.length > 3)
+            generator.setBits(Integer.parseInt(args[3]) == 64 ? Bits.BITS_64 : Integer.parseInt(args[3]) == 16 ? Bits.BITS_16 : Bits.BITS_32);
+
+        generator.generate(Paths.get(args[0]), parseSize(args[1]));
+
+    }
+
+    static long parseSize(String size) {
+
+        String upper = size.toUpperCase();
+        int unit = "KMG".indexOf(upper.charAt(upper.length() - 1));
+        if (unit < 0)
+            return Long.parseLong(upper);
+
+        return Long.parseLong(upper.substring(0, upper.length() - 1)) << (10 * (unit + 1));
+
+    }
+
+    /**
+     * @param size the number of bytes
+     * @return the generated bytes
+     */
+    public byte[] generate(int size) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+
+        try {
+            generate(out, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return out.toByteArray();
+
+    }
+
+    /**
+     * @param file the file to write, replaced if it exists
+     * @param size the number of bytes
+     */
+    public void generate(Path file, long size) throws IOException {
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BLOCK_SIZE)) {
+            generate(out, size);
+        }
+
+    }
+
+    /**
+     * Writes exactly size bytes, the last bytes are NOPs if the next instruction does not fit.
+     *
+     * @param out  the stream to write to, not closed
+     * @param size the number of bytes
+     */
+    public void generate(OutputStream out, long size) throws IOException {
+
+        Run run = new Run();
+        byte[] block = new byte[BLOCK_SIZE];
+        int used = 0;
+        long written = 0;
+
+        while (written + used < size) {
+
+            if (used + Math.max(MAX_INSTRUCTION_LENGTH, maxDataIsland) > block.length) {
+                out.write(block, 0, used);
+                written += used;
+                used = 0;
+                continue;
+            }
+
+            int limit = (int) Math.min(size - written - used, block.length - used);
+            used += run.next(block, used, limit, written + used);
+
+        }
+
+        out.write(block, 0, used);
+
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public byte getBits() {
+        return bits;
+    }
+
+    /**
+     * @param bits the bit size the code is generated for, REX prefixes are only generated for 64-bit
+     */
+    public void setBits(byte bits) {
+        this.bits = bits;
+    }
+
+    public int getWeight(Category category) {
+        return mix.get(category);
+    }
+
+    /**
+     * @param category the kind of instructions
+     * @param weight   how often the kind is picked relative to the other kinds, 0 to never pick it
+     */
+    public void setWeight(Category category, int weight) {
+
+        if (weight < 0)
+            throw new IllegalArgumentException("Weight must not be negative: " + weight);
+
+        mix.put(category, weight);
+
+    }
+
+    public double getPrefixRate() {
+        return prefixRate;
+    }
+
+    /**
+     * @param prefixRate the share of instructions with a legacy prefix (operand size, address size, segment, lock, rep)
+     */
+    public void setPrefixRate(double prefixRate) {
+        this.prefixRate = prefixRate;
+    }
+
+    public double getRexRate() {
+        return rexRate;
+    }
+
+    /**
+     * @param rexRate the share of instructions with a REX prefix in 64-bit code
+     */
+    public void setRexRate(double rexRate) {
+        this.rexRate = rexRate;
+    }
+
+    public double getDataIslandRate() {
+        return dataIslandRate;
+    }
+
+    /**
+     * @param dataIslandRate the chance that a data island follows an instruction, 0 for code only
+     */
+    public void setDataIslandRate(double dataIslandRate) {
+        this.dataIslandRate = dataIslandRate;
+    }
+
+    /**
+     * @param min the minimum size of a data island
+     * @param max the maximum size of a data island
+     */
+    public void setDataIslandSize(int min, int max) {
+
+        if (min < 1 || max < min || max > BLOCK_SIZE / 2)
+            throw new IllegalArgumentException("Invalid data island size: " + min + " - " + max);
+
+        this.minDataIsland = min;
+        this.maxDataIsland = max;
+
+    }
+
+    /**
+     * State of one generation, every generation starts from the seed.
+     */
+    private final class Run {
+
+        final SplittableRandom random = new SplittableRandom(seed);
+        final int[][] opcodes = new int[Category.values().length][];
+        final int[] cumulative = new int[Category.values().length];
+        final Targets targets = new Targets();
+
+        final X86LengthDecoder decoder;
+        final byte[] candidate = new byte[MAX_INSTRUCTION_LENGTH * 4]; // a full decoder window after the instruction
+
+        Run() {
+
+            Disassembler disassembler = new Disassembler(Architecture.X86, Endianness.LITTLE);
+            disassembler.setBits(bits);
+            X86Disassembler platform = (X86Disassembler) disassembler.getBackend();
+
+            decoder = platform.newLengthDecoder(new ArrayByteSource(candidate), 0, candidate.length);
+            decoder.setMode(DecodeMode.MNEMONIC_ONLY);
+
+            List<List<Integer>> byCategory = new ArrayList<>();
+            for (int i = 0; i < Category.values().length; i++)
+                byCategory.add(new ArrayList<>());
+
+            for (int opcode = 0; opcode < MNEMONIC_IDS.length; opcode++) {
+                Category category = categorize(opcode);
+                if (category != null)
+                    byCategory.get(category.ordinal()).add(opcode);
+            }
+
+            int total = 0;
+            for (Category category : Category.values()) {
+                opcodes[category.ordinal()] = byCategory.get(category.ordinal()).stream().mapToInt(Integer::intValue).toArray();
+                if (opcodes[category.ordinal()].length > 0)
+                    total += mix.get(category);
+                cumulative[category.ordinal()] = total;
+            }
+
+            if (total == 0)
+                throw new IllegalStateException("No instructions to generate, every weight is 0");
+
+        }
+
+        /**
+         * @return the category of an opcode, null if it is not generated
+         */
+        Category categorize(int opcode) {
+
+            int mnemonic = MNEMONIC_IDS[opcode];
+            if (mnemonic == PREFIX_ID || mnemonic == Mnemonic.UNKNOWN.getId() || mnemonic == Mnemonic.NONE)
+                return null;
+            if (bits == Bits.BITS_64 && opcode >= 0x40 && opcode <= 0x4f) // REX
+                return null;
+
+            if (Mnemonic.get(mnemonic).getType() == InstructionType.JUMP_RELATIVE)
+                return Category.BRANCH;
+
+            boolean modrm = false;
+            boolean immediate = false;
+            for (int microOp : MicroOps.PROGRAMS[opcode]) {
+                switch (MicroOps.code(microOp)) {
+                    case MicroOps.REGRM:
+                    case MicroOps.RM:
+                    case MicroOps.OPCODE_REGISTER_RM:
+                        modrm = true;
+                        break;
+                    case MicroOps.IMMEDIATE:
+                    case MicroOps.HANDLER:
+                        immediate = true;
+                        break;
+                }
+            }
+
+            return modrm ? Category.MODRM : immediate ? Category.IMMEDIATE : Category.PLAIN;
+
+        }
+
+        /**
+         * Generates an instruction, maybe followed by a data island.
+         *
+         * @param position the position of the instruction in the stream
+         * @return the number of bytes generated, at most limit
+         */
+        int next(byte[] out, int offset, int limit, long position) {
+
+            int length = instruction(position);
+
+            if (length > limit) { // does not fit before the end
+                Arrays.fill(out, offset, offset + limit, (byte) 0x90);
+                return limit;
+            }
+
+            System.arraycopy(candidate, 0, out, offset, length);
+            targets.add(position);
+
+            if (dataIslandRate > 0 && random.nextDouble() < dataIslandRate) {
+                int island = Math.min(limit - length, random.nextInt(minDataIsland, maxDataIsland + 1));
+                dataIsland(out, offset + length, island);
+                length += island;
+            }
+
+            return length;
+
+        }
+
+        /**
+         * Generates an instruction into the candidate buffer.
+         *
+         * @return its length
+         */
+        int instruction(long position) {
+
+            for (int attempt = 0; attempt < 16; attempt++) {
+
+                Arrays.fill(candidate, (byte) 0);
+                int length = 0;
+
+                if (random.nextDouble() < prefixRate)
+                    candidate[length++] = (byte) LEGACY_PREFIXES[random.nextInt(LEGACY_PREFIXES.length)];
+                if (bits == Bits.BITS_64 && random.nextDouble() < rexRate)
+                    candidate[length++] = (byte) (0x40 | random.nextInt(16));
+
+                Category category = pick();
+                int[] choices = opcodes[category.ordinal()];
+                candidate[length++] = (byte) choices[random.nextInt(choices.length)];
+
+                for (int i = length; i < MAX_INSTRUCTION_LENGTH; i++)
+                    candidate[i] = (byte) random.nextInt(256);
+
+                try {
+
+                    decoder.seek(0);
+                    Instruction instruction = decoder.nextInstruction();
+                    int size = (int) decoder.getPosition();
+
+                    if (instruction == null || instruction.getMnemonicId() == Mnemonic.INVALID.getId())
+                        continue;
+
+                    if (category == Category.BRANCH)
+                        target(length, size, position);
+
+                    return size;
+
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+            }
+
+            candidate[0] = (byte) 0x90; // only invalid candidates
+            return 1;
+
+        }
+
+        /**
+         * Points a relative jump at a recent instruction where its displacement allows it.
+         */
+        void target(int displacement, int size, long position) {
+
+            if (targets.size() == 0 || size - displacement != 1 || random.nextInt(4) == 0)
+                return; // keep the random target
+
+            long target = targets.get(random.nextInt(targets.size()));
+            long relative = target - (position + size);
+
+            if (relative >= Byte.MIN_VALUE)
+                candidate[displacement] = (byte) relative;
+
+        }
+
+        Category pick() {
+
+            int value = random.nextInt(cumulative[cumulative.length - 1]);
+            for (Category category : Category.values()) {
+                if (value < cumulative[category.ordinal()])
+                    return category;
+            }
+
+            throw new IllegalStateException();
+
+        }
+
+        void dataIsland(byte[] out, int offset, int length) {
+
+            switch (random.nextInt(3)) {
+
+                case 0: // random data
+                    for (int i = 0; i < length; i++)
+                        out[offset + i] = (byte) random.nextInt(256);
+                    break;
+
+                case 1: // zero terminated strings
+                    for (int i = 0; i < length; i++)
+                        out[offset + i] = random.nextInt(12) == 0 ? 0 : (byte) (' ' + random.nextInt(95));
+                    break;
+
+                default: // padding
+                    Arrays.fill(out, offset, offset + length, random.nextBoolean() ? (byte) 0 : (byte) 0xcc);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Ring of the last {@link #TARGETS} instruction starts, public for the tests.
+     */
+    public static final class Targets {
+
+        final long[] positions = new long[TARGETS];
+        public long count; // instructions added, a long so gigabyte streams never wrap it
+
+        public void add(long position) {
+            positions[(int) (count++ & (TARGETS - 1))] = position;
+        }
+
+        public int size() {
+            return (int) Math.min(count, TARGETS);
+        }
+
+        /**
+         * @param back 0 for the last instruction start, up to {@link #size()} - 1
+         */
+        public long get(int back) {
+            return positions[(int) ((count - 1 - back) & (TARGETS - 1))];
+        }
+
+    }
+
+}